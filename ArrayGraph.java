@@ -0,0 +1,64 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/**
+ * Content: An in-memory history for MergeBase, built commit by commit, so
+ *          merge bases can be tested and timed on synthetic graphs without
+ *          a repository. Rows are numbered in the order they are added.
+ */
+
+class ArrayGraph implements MergeBase.Graph {
+    private int[] parents;
+    private int[] secondParents;
+    private int[] generations;
+    private int size;
+
+    ArrayGraph(int capacity) {
+        parents = new int[Math.max(capacity, 1)];
+        secondParents = new int[parents.length];
+        generations = new int[parents.length];
+    }
+
+    /* Adds a commit with PARENT and SECONDPARENT (either may be NONE) and
+       returns its row */
+    int add(int parent, int secondParent) {
+        if (size == parents.length) {
+            int capacity = 2 * size;
+            parents = Arrays.copyOf(parents, capacity);
+            secondParents = Arrays.copyOf(secondParents, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+        }
+        parents[size] = parent;
+        secondParents[size] = secondParent;
+        int gen = 0;
+        if (parent != NONE) {
+            gen = generations[parent];
+        }
+        if (secondParent != NONE) {
+            gen = Math.max(gen, generations[secondParent]);
+        }
+        generations[size] = gen + 1;
+        return size++;
+    }
+
+    /* Returns the number of commits */
+    int size() {
+        return size;
+    }
+
+    @Override
+    public int parent(int row) {
+        return parents[row];
+    }
+
+    @Override
+    public int secondParent(int row) {
+        return secondParents[row];
+    }
+
+    @Override
+    public int generation(int row) {
+        return generations[row];
+    }
+}
@@ -0,0 +1,135 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Content: Runs a script of gitlet commands in one process: "gitlet batch"
+ *          reads them from standard input, "gitlet batch FILE" from FILE.
+ *          Each line is one command without the leading "gitlet", e.g.
+ *
+ *              add a.txt b.txt
+ *              commit "add a and b"
+ *
+ *          Operands are split at spaces; quote them with " or ' to keep
+ *          spaces in. Blank lines and lines starting with # are skipped.
+ *
+ *          All commands share one RepositorySession: the stage, HEAD and
+ *          the refs are read once and kept in memory, and written out
+ *          after each commit or merge, and at the end. A failing command
+ *          prints its message, as it would on its own, and the batch goes
+ *          on with the next line; whatever the command changed in the
+ *          stage, HEAD or the refs before it failed is rolled back first,
+ *          so no later write saves half of it. The time each command took is printed
+ *          to standard error, then the total.
+ */
+
+class Batch {
+    /* Commands after which the stage is written out */
+    private static final Set<String> BOUNDARIES = Set.of("commit", "merge");
+    /* Commands a batch cannot run */
+    private static final Set<String> REFUSED = Set.of("init", "batch", "daemon");
+
+    /* Runs the commands in FILENAME, or on standard input if it is null */
+    static void run(String filename) {
+        if (Daemon.isRunning()) {
+            throw new GitletException("A daemon is serving this repository;"
+                    + " stop it or run the commands through it.");
+        }
+        long total = 0;
+        int commands = 0;
+        RepositorySession session = RepositorySession.open();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(filename == null
+                ? System.in : new FileInputStream(filename), StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                String[] args;
+                try {
+                    args = split(line);
+                } catch (GitletException excp) {
+                    System.out.println(excp.getMessage());
+                    continue;
+                }
+                if (args.length == 0 || args[0].startsWith("#")) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                runOne(args, session);
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                commands++;
+                System.out.flush();
+                System.err.printf("batch: %8.1f ms  %s%n", elapsed / 1e6, line.trim());
+            }
+        } catch (IOException excp) {
+            throw new GitletException("Cannot read " + (filename == null ? "input" : filename)
+                    + ": " + excp.getMessage());
+        } finally {
+            session.flush();
+            session.close();
+        }
+        System.err.printf("batch: %8.1f ms  total, %d commands%n", total / 1e6, commands);
+    }
+
+    private static void runOne(String[] args, RepositorySession session) {
+        if (REFUSED.contains(args[0])) {
+            System.out.println("Cannot run " + args[0] + " in a batch.");
+            return;
+        }
+        session.checkpoint();
+        try {
+            Main.run(args);
+            if (BOUNDARIES.contains(args[0])) {
+                session.flush();
+            }
+        } catch (GitletException excp) {
+            session.rollback();
+            System.out.println(excp.getMessage());
+        } catch (RuntimeException excp) {
+            session.rollback();
+            throw excp;
+        }
+    }
+
+    /* Splits LINE into operands at unquoted spaces */
+    static String[] split(String line) {
+        List<String> args = new ArrayList<>();
+        StringBuilder arg = new StringBuilder();
+        boolean inArg = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); ++i) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inArg = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArg) {
+                    args.add(arg.toString());
+                    arg.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                arg.append(c);
+                inArg = true;
+            }
+        }
+        if (quote != 0) {
+            throw new GitletException("Unterminated quote in: " + line);
+        }
+        if (inArg) {
+            args.add(arg.toString());
+        }
+        return args.toArray(new String[0]);
+    }
+}
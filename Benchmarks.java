@@ -0,0 +1,374 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Content: Timing drivers for the parts of gitlet that have to stay fast
+ *          on large repositories, kept out of the classes they time.
+ *          Run one with
+ *
+ *              java gitlet.Benchmarks NAME [ARGS...]
+ *
+ *          mergebase [commits]: merge-base searches on a synthetic
+ *                            history (200000 commits by default).
+ *          messages [commits]: the MessageIndex over synthetic commit
+ *                            messages (1000000 by default), kept in a
+ *                            temporary directory.
+ *          chunker [average]: content-defined chunking of 16 MB of
+ *                            log-like data, before and after an edit.
+ *          scan [dir]: WorkingTree scans with more and more
+ *                            workers, of DIR or of a generated tree
+ *                            that is removed afterwards.
+ *          diff [lines]: both line diff algorithms on a generated
+ *                            file (200000 lines by default).
+ *          merge3 [lines]: three-way merges of a generated file with
+ *                            non-overlapping edits on each side.
+ */
+
+class Benchmarks {
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("usage: java gitlet.Benchmarks NAME [ARGS...]");
+            return;
+        }
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+        switch (args[0]) {
+            case "mergebase":
+                mergeBase(rest);
+                break;
+            case "messages":
+                messages(rest);
+                break;
+            case "chunker":
+                chunker(rest);
+                break;
+            case "scan":
+                scan(rest);
+                break;
+            case "diff":
+                diff(rest);
+                break;
+            case "merge3":
+                merge3(rest);
+                break;
+            default:
+                System.out.println("No benchmark named " + args[0] + ".");
+        }
+    }
+
+    /* Times merge-base searches on a 200k-commit history: a long trunk with a
+       side branch merged back every 100 commits, two topic branches that
+       forked recently, and a criss-cross at the end. Then on a wide one:
+       two children of a commit that merged 20000 branches, one of them
+       also merging a short side chain, so the walk goes on below the
+       merge base with all 20000 branches queued and STALE. */
+    private static void mergeBase(String[] args) {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        ArrayGraph g = new ArrayGraph(commits + 64);
+        int trunk = g.add(MergeBase.Graph.NONE, MergeBase.Graph.NONE);
+        int side = trunk;
+        while (g.size() < commits) {
+            trunk = g.add(trunk, MergeBase.Graph.NONE);
+            side = g.add(side, MergeBase.Graph.NONE);
+            if (g.size() % 100 == 0) {
+                trunk = g.add(trunk, side);
+                side = trunk;
+            }
+        }
+        int fork = trunk;
+        int topicA = fork;
+        int topicB = fork;
+        for (int i = 0; i < 10; ++i) {
+            topicA = g.add(topicA, MergeBase.Graph.NONE);
+            topicB = g.add(topicB, MergeBase.Graph.NONE);
+        }
+        int crossA = g.add(topicA, topicB);
+        int crossB = g.add(topicB, topicA);
+
+        long start = System.nanoTime();
+        int base = MergeBase.best(g, topicA, topicB);
+        long recent = System.nanoTime() - start;
+        System.out.printf("%d commits: recent fork   base=%d (expected %d) %.3f ms%n",
+                g.size(), base, fork, recent / 1e6);
+
+        start = System.nanoTime();
+        List<Integer> bases = MergeBase.find(g, crossA, crossB);
+        long cross = System.nanoTime() - start;
+        System.out.printf("%d commits: criss-cross   bases=%s (expected [%d, %d]) %.3f ms%n",
+                g.size(), bases, topicB, topicA, cross / 1e6);
+
+        start = System.nanoTime();
+        base = MergeBase.best(g, 1, topicA);
+        long deep = System.nanoTime() - start;
+        System.out.printf("%d commits: root vs. tip  base=%d %.3f ms%n",
+                g.size(), base, deep / 1e6);
+
+        ArrayGraph wide = new ArrayGraph(40100);
+        int root = wide.add(MergeBase.Graph.NONE, MergeBase.Graph.NONE);
+        int chain = root;
+        for (int i = 0; i < 10; ++i) {
+            chain = wide.add(chain, MergeBase.Graph.NONE);
+        }
+        int fan = wide.add(root, MergeBase.Graph.NONE);
+        int merges = wide.add(fan, MergeBase.Graph.NONE);
+        for (int i = 0; i < 20000; ++i) {
+            merges = wide.add(merges, wide.add(fan, MergeBase.Graph.NONE));
+        }
+        int left = wide.add(merges, chain);
+        int right = wide.add(merges, MergeBase.Graph.NONE);
+        start = System.nanoTime();
+        base = MergeBase.best(wide, left, right);
+        long wideTime = System.nanoTime() - start;
+        System.out.printf("%d commits: wide merges   base=%d (expected %d) %.3f ms%n",
+                wide.size(), base, merges, wideTime / 1e6);
+    }
+
+    /* Builds the message index over N synthetic commit messages, in a
+       temporary directory that is removed afterwards, and times lookups
+       by exact message and by words */
+    private static void messages(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        File repo = Files.createTempDirectory("gitlet-messages").toFile();
+        try {
+            messages(n, repo);
+        } finally {
+            deleteTree(repo);
+        }
+    }
+
+    private static void messages(int n, File repo) {
+        String[] verbs = {"fix", "add", "remove", "refactor", "update", "merge"};
+        String[] things = {"parser", "status", "checkout", "log", "pack", "index"};
+        String[] messages = new String[n];
+        for (int i = 0; i < n; ++i) {
+            messages[i] = verbs[i % verbs.length] + " " + things[(i / 7) % things.length]
+                    + " for ticket " + i;
+        }
+        long start = System.nanoTime();
+        MessageIndex idx = MessageIndex.over(new MessageIndex.Messages() {
+            @Override
+            public int size() {
+                return messages.length;
+            }
+
+            @Override
+            public String message(int row) {
+                return messages[row];
+            }
+        }, repo);
+        System.out.printf("indexed %d messages in %.0f ms%n", n, (System.nanoTime() - start) / 1e6);
+
+        for (int round = 0; round < 3; ++round) {
+            start = System.nanoTime();
+            int found = idx.exact(messages[n - 1]).size();
+            System.out.printf("%-30s %-6s %7d row(s) in %.3f ms%n", messages[n - 1], "exact",
+                    found, (System.nanoTime() - start) / 1e6);
+            for (String query : new String[] {"ticket " + (n / 2), "merge log"}) {
+                start = System.nanoTime();
+                found = idx.words(query).size();
+                System.out.printf("%-30s %-6s %7d row(s) in %.3f ms%n", query, "words",
+                        found, (System.nanoTime() - start) / 1e6);
+            }
+        }
+    }
+
+    /* Chunks 16 MB of log-like data, then a copy with a line inserted in the
+       middle, and reports how much of the second version is new. */
+    private static void chunker(String[] args) throws IOException {
+        int average = args.length > 0 ? Integer.parseInt(args[0]) : 64 * 1024;
+        StringBuilder log = new StringBuilder();
+        Random random = new Random(1);
+        for (int i = 0; log.length() < 16 << 20; ++i) {
+            log.append(i).append(" request id=").append(random.nextInt())
+                    .append(" took ").append(random.nextInt(1000)).append("ms\n");
+        }
+        byte[] v1 = log.toString().getBytes();
+        log.insert(log.length() / 2, "an inserted line\n");
+        byte[] v2 = log.toString().getBytes();
+
+        HashSet<String> seen = new HashSet<>();
+        int chunks = 0;
+        for (byte[] chunk : chunks(v1, average)) {
+            seen.add(Utils.sha1(chunk));
+            chunks++;
+        }
+        long start = System.nanoTime();
+        long fresh = 0;
+        for (byte[] chunk : chunks(v2, average)) {
+            if (!seen.contains(Utils.sha1(chunk))) {
+                fresh += chunk.length;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d chunks of ~%d bytes; second version: %d of %d bytes new"
+                + " (%.1f ms to chunk and hash)%n",
+                chunks, average, fresh, v2.length, elapsed / 1e6);
+    }
+
+    private static List<byte[]> chunks(byte[] data, int average) throws IOException {
+        Chunker chunker = new Chunker(Channels.newChannel(new ByteArrayInputStream(data)), average);
+        List<byte[]> result = new ArrayList<>();
+        for (byte[] chunk = chunker.next(); chunk != null; chunk = chunker.next()) {
+            result.add(chunk);
+        }
+        return result;
+    }
+
+    /* Times scans of the tree under args[0] (or of a generated tree of
+       1000 directories with 100 files each, in a temporary directory that
+       is removed afterwards) with 1, 2, 4, ... workers, up to the number
+       of cores. */
+    private static void scan(String[] args) throws IOException {
+        if (args.length > 0) {
+            scan(Paths.get(args[0]));
+            return;
+        }
+        Path root = Files.createTempDirectory("gitlet-scan");
+        try {
+            for (int d = 0; d < 1000; ++d) {
+                Path dir = root.resolve("d" + (d % 10)).resolve("e" + d);
+                Files.createDirectories(dir);
+                for (int f = 0; f < 100; ++f) {
+                    Files.write(dir.resolve("f" + f), new byte[0]);
+                }
+            }
+            scan(root);
+        } finally {
+            deleteTree(root.toFile());
+        }
+    }
+
+    private static void scan(Path root) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int workers = 1; ; workers = Math.min(workers * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            WorkingTree.scan(root, pool);
+            long start = System.nanoTime();
+            int count = WorkingTree.scan(root, pool).files().size();
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            System.out.printf("%2d workers: %d files in %.1f ms%n", workers, count, elapsed / 1e6);
+            if (workers == cores) {
+                break;
+            }
+        }
+    }
+
+    /* Returns N generated lines of code-like text, with a closing brace
+       every tenth line */
+    private static List<String> lines(int n) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            lines.add(i % 10 == 9 ? "}\n" : "    value" + i + " = compute(" + i + ");\n");
+        }
+        return lines;
+    }
+
+    private static byte[] join(List<String> lines) {
+        return String.join("", lines).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /* Diffs a generated file of N lines (200000 by default) against a copy
+       with about one line in a hundred changed, inserted or deleted, with
+       both algorithms, and checks that the edits rebuild the copy. */
+    private static void diff(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        Random random = new Random(42);
+        List<String> before = lines(n);
+        List<String> after = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            int roll = random.nextInt(300);
+            if (roll == 0) {
+                after.add("    changed" + i + ";\n");
+            } else if (roll == 1) {
+                after.add(before.get(i));
+                after.add("    inserted" + i + ";\n");
+            } else if (roll != 2) {
+                after.add(before.get(i));
+            }
+        }
+        Diff.Text a = new Diff.Text(join(before));
+        Diff.Text b = new Diff.Text(join(after));
+        for (int round = 0; round < 3; ++round) {
+            for (Diff.Algorithm algorithm : Diff.Algorithm.values()) {
+                long start = System.nanoTime();
+                List<Diff.Edit> edits = Diff.diff(a, b, algorithm);
+                double elapsed = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%-9s %d lines: %d edits in %.1f ms%s%n", algorithm, n,
+                        edits.size(), elapsed, rebuilds(a, b, edits) ? "" : " (WRONG)");
+            }
+        }
+    }
+
+    /* Returns true if applying EDITS to A gives B */
+    private static boolean rebuilds(Diff.Text a, Diff.Text b, List<Diff.Edit> edits) {
+        List<String> result = new ArrayList<>();
+        int ai = 0;
+        for (Diff.Edit edit : edits) {
+            for (; ai < edit.aStart; ++ai) {
+                result.add(a.lines[ai]);
+            }
+            for (int i = edit.bStart; i < edit.bEnd; ++i) {
+                result.add(b.lines[i]);
+            }
+            ai = edit.aEnd;
+        }
+        for (; ai < a.size(); ++ai) {
+            result.add(a.lines[ai]);
+        }
+        return result.equals(List.of(b.lines));
+    }
+
+    /* Merges two edited copies of a generated file of N lines (200000 by
+       default), one changing lines in the first half and one in the second,
+       and reports the time and the number of conflicts (which should be
+       none) for each algorithm. */
+    private static void merge3(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        Random random = new Random(42);
+        List<String> base = lines(n);
+        List<String> ours = new ArrayList<>(base);
+        List<String> theirs = new ArrayList<>(base);
+        for (int k = 0; k < n / 200; ++k) {
+            int line = random.nextInt(n / 2);
+            ours.set(line, "    ours" + line + ";\n");
+            theirs.set(n / 2 + line, "    theirs" + line + ";\n");
+        }
+        byte[] o = join(base);
+        byte[] a = join(ours);
+        byte[] b = join(theirs);
+        for (int round = 0; round < 3; ++round) {
+            for (Diff.Algorithm algorithm : Diff.Algorithm.values()) {
+                long start = System.nanoTime();
+                Merge3 result = Merge3.merge(o, a, b, algorithm);
+                double elapsed = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%-9s %d lines: %d conflicts in %.1f ms%n",
+                        algorithm, n, result.conflicts, elapsed);
+            }
+        }
+    }
+
+    /* Deletes FILE and, if it is a directory, everything under it */
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+}
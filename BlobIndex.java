@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Content: BlobIndex records every blob ever stored, replacing the
+ *          DataPool map that used to be serialized inside each commit.
+ *          It lives in its own sorted file (.gitlet/blobIndex), so commits
+ *          only carry blob IDs and the index is shared by all of them.
+ *          Each record is a raw 20-byte blob ID followed by the blob's
+ *          size in bytes.
+ *
+ *          A put appends its record to .gitlet/blobIndex-tail, which is
+ *          read into memory when the index is opened and searched before
+ *          the sorted file. Once the tail holds more than TAIL_LIMIT
+ *          records, they are merged into the sorted file in one rewrite
+ *          and the tail is emptied. Storing a blob thus costs an append,
+ *          not a rewrite of the whole index. Commands that store many
+ *          blobs at once call deferWrites first: puts are then only kept
+ *          in memory until flush appends them all in one go. The index
+ *          may be used from several threads.
+ */
+
+public class BlobIndex {
+    private static final int RECORD_SIZE = SortedIdFile.ID_LENGTH + Long.BYTES;
+    private static final int TAIL_LIMIT = 512;
+    private static BlobIndex index = null;
+    private final SortedIdFile entries;
+    private final File tailFile;
+    /* tail: the records appended to tailFile, by blob ID */
+    private final TreeMap<String, Long> tail = new TreeMap<>();
+    /* pending: puts not written yet, or null if puts are written at once */
+    private TreeMap<String, Long> pending;
+
+    /* Only one BlobIndex is opened per process */
+    private BlobIndex() {
+        entries = new SortedIdFile(new File(GitLet.REPO + "/blobIndex"), RECORD_SIZE);
+        tailFile = new File(GitLet.REPO + "/blobIndex-tail");
+        if (tailFile.isFile()) {
+            ByteBuffer records = ByteBuffer.wrap(Utils.readContents(tailFile));
+            byte[] id = new byte[SortedIdFile.ID_LENGTH];
+            while (records.remaining() >= RECORD_SIZE) {
+                records.get(id);
+                tail.put(Utils.bytesToHex(id), records.getLong());
+            }
+            if (records.hasRemaining()) {
+                /* a record cut short by a crash; drop it, so later appends
+                   stay aligned */
+                try (RandomAccessFile file = new RandomAccessFile(tailFile, "rw")) {
+                    file.setLength(records.position());
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException("cannot repair " + tailFile + ": "
+                            + excp.getMessage());
+                }
+            }
+        }
+    }
+
+    /* Returns the index of the current repository */
+    public static synchronized BlobIndex getIndex() {
+        if (index == null) {
+            index = new BlobIndex();
+        }
+        return index;
+    }
+
+    /* Records a blob with FILEID and SIZE; the record is appended to the
+       index at once unless writes are deferred */
+    public synchronized void put(String fileId, long size) {
+        if (pending != null) {
+            pending.put(fileId, size);
+        } else {
+            append(List.of(fileId), List.of(size));
+        }
+    }
+
+    private static byte[] record(String fileId, long size) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(Utils.hexToBytes(fileId));
+        record.putLong(size);
+        return record.array();
+    }
+
+    /* Appends the records of FILEIDS and SIZES to the tail, merging the
+       tail into the sorted file if it grew too long */
+    private void append(Collection<String> fileIds, Collection<Long> sizes) {
+        ByteBuffer records = ByteBuffer.allocate(fileIds.size() * RECORD_SIZE);
+        Iterator<Long> size = sizes.iterator();
+        for (String fileId : fileIds) {
+            long blobSize = size.next();
+            records.put(record(fileId, blobSize));
+            tail.put(fileId, blobSize);
+        }
+        if (tail.size() > TAIL_LIMIT) {
+            List<byte[]> merged = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : tail.entrySet()) {
+                merged.add(record(entry.getKey(), entry.getValue()));
+            }
+            entries.insertAll(merged);
+            tail.clear();
+            tailFile.delete();
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(tailFile, true)) {
+            out.write(records.array());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("cannot append to " + tailFile + ": "
+                    + excp.getMessage());
+        }
+    }
+
+    /* Keeps puts in memory until the next flush */
+    public synchronized void deferWrites() {
+        if (pending == null) {
+            pending = new TreeMap<>();
+        }
+    }
+
+    /* Writes the deferred puts, if any, and goes back to writing at once */
+    public synchronized void flush() {
+        if (pending == null) {
+            return;
+        }
+        TreeMap<String, Long> puts = pending;
+        pending = null;
+        if (!puts.isEmpty()) {
+            append(puts.keySet(), puts.values());
+        }
+    }
+
+    /* Returns the size recorded in memory for FILEID, or null */
+    private Long unsorted(String fileId) {
+        Long size = pending == null ? null : pending.get(fileId);
+        return size != null ? size : tail.get(fileId);
+    }
+
+    /* Checks whether a fileId already exists (avoid redundancy) */
+    public synchronized boolean containsKey(String fileId) {
+        return unsorted(fileId) != null || entries.contains(Utils.hexToBytes(fileId));
+    }
+
+    /* Returns the size of the blob FILEID, or -1 if it is not indexed */
+    public synchronized long getSize(String fileId) {
+        Long size = unsorted(fileId);
+        if (size != null) {
+            return size;
+        }
+        int i = entries.find(Utils.hexToBytes(fileId));
+        if (i < 0) {
+            return -1;
+        }
+        return entries.record(i).getLong(0);
+    }
+
+    /* Returns the number of blobs in the index */
+    public synchronized int size() {
+        TreeSet<String> unsorted = new TreeSet<>(tail.keySet());
+        if (pending != null) {
+            unsorted.addAll(pending.keySet());
+        }
+        int size = entries.size();
+        for (String fileId : unsorted) {
+            if (!entries.contains(Utils.hexToBytes(fileId))) {
+                size++;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Content: Writes the files of a checkout. Reading a blob, inflating it
+ *          and writing the file are done by a pool of workers, so many
+ *          files are in flight at once. At most twice as many files as
+ *          there are workers are queued at any time: handing out a file
+ *          blocks until an earlier one is done, so a checkout of a huge
+ *          tree never queues the whole tree up front.
+ *
+ *          Workers are virtual threads where the JVM has them, and a
+ *          fixed pool of platform threads (core.checkoutWorkers, two per
+ *          core by default) otherwise. Recording what was written in the
+ *          stage and the working-tree snapshot is not thread-safe, so it
+ *          is done afterwards on the calling thread.
+ *
+ *          With core.timings set to true, the time spent in each phase
+ *          (plan, delete, write, index) is printed to standard error.
+ */
+
+class Checkout {
+    private final int workers;
+    private final boolean timings;
+    private final String[] phases = {"plan", "delete", "write", "index"};
+    private final long[] nanos = new long[phases.length];
+    private long phaseStart;
+    private int phase;
+
+    Checkout() {
+        Config config = Config.getConfig();
+        int cores = Runtime.getRuntime().availableProcessors();
+        workers = Math.max(1, config.getInt(Config.CHECKOUT_WORKERS, 2 * cores));
+        timings = Boolean.parseBoolean(config.get(Config.TIMINGS));
+        phaseStart = System.nanoTime();
+    }
+
+    /* Ends the current phase and starts the next one */
+    void nextPhase() {
+        long now = System.nanoTime();
+        nanos[phase++] += now - phaseStart;
+        phaseStart = now;
+    }
+
+    /* Deletes the working files PATHS */
+    void delete(List<String> paths) {
+        for (String path : paths) {
+            WorkingTree.delete(path);
+        }
+        nextPhase();
+    }
+
+    /* Writes the blob of each of PATHS in TARGET to the working directory,
+       then records the written files in STAGE */
+    void write(CommitNode target, List<String> paths, StagingArea stage) {
+        GitLet.getObjectStore();
+        ExecutorService pool = newExecutor();
+        Semaphore slots = new Semaphore(2 * workers);
+        List<Future<?>> pending = new ArrayList<>();
+        try {
+            for (String path : paths) {
+                String fileId = target.fileNames.get(path);
+                slots.acquireUninterruptibly();
+                pending.add(pool.submit(() -> {
+                    try {
+                        target.writeBlob(fileId, new File(path));
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            for (Future<?> result : pending) {
+                result.get();
+            }
+        } catch (ExecutionException excp) {
+            throw new IllegalArgumentException("checkout failed: " + excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new GitletException("Checkout was interrupted; some files may not"
+                    + " have been written.");
+        } finally {
+            pool.shutdown();
+        }
+        nextPhase();
+
+        for (String path : paths) {
+            WorkingTree.written(path);
+            stage.record(path, target.fileNames.get(path));
+        }
+        nextPhase();
+        if (timings) {
+            report(paths.size());
+        }
+    }
+
+    private void report(int files) {
+        StringBuilder line = new StringBuilder("checkout:");
+        for (int i = 0; i < phases.length; ++i) {
+            line.append(String.format(" %s %.1f ms", phases[i], nanos[i] / 1e6));
+            if (i < phases.length - 1) {
+                line.append(',');
+            }
+        }
+        line.append(String.format(" (%d files, %d workers)", files, workers));
+        System.err.println(line);
+    }
+
+    /* Returns an executor running each task on its own virtual thread if
+       the JVM has them; the semaphore in write bounds how many run at
+       once. Otherwise returns a fixed pool of platform threads. */
+    private ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newFixedThreadPool(workers);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Content: Splits a stream into content-defined chunks, FastCDC style. A
+ *          gear hash is rolled over the bytes, and a chunk ends where the
+ *          low bits of the hash are all zero. The cut points depend only
+ *          on the nearby bytes, so an edit in one region of a file moves
+ *          at most the chunks around it; the rest of the file cuts into
+ *          exactly the same chunks as before and is stored only once.
+ *
+ *          Chunks are never shorter than a quarter of the average size
+ *          nor longer than four times it. Before the average size a
+ *          stricter mask (two more bits) is used and after it a looser
+ *          one (two fewer bits), which keeps chunk sizes close to the
+ *          average.
+ */
+
+class Chunker {
+    /* One random 64-bit value per byte value. The seed is fixed: changing
+       the table changes every cut point, and with it every chunk ID. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; ++i) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final ReadableByteChannel in;
+    private final int min;
+    private final int avg;
+    private final int max;
+    private final long strictMask;
+    private final long looseMask;
+    private final byte[] buffer;
+    private int start;
+    private int end;
+    private boolean eof;
+
+    /* A chunker over IN for chunks of AVERAGE bytes, which is rounded down
+       to a power of two */
+    Chunker(ReadableByteChannel in, int average) {
+        this.in = in;
+        avg = Integer.highestOneBit(average);
+        min = avg / 4;
+        max = avg * 4;
+        int bits = Integer.numberOfTrailingZeros(avg);
+        strictMask = (1L << (bits + 2)) - 1;
+        looseMask = (1L << (bits - 2)) - 1;
+        buffer = new byte[max];
+    }
+
+    /* Returns the size of the largest chunk for an AVERAGE chunk size;
+       files no longer than this are a single chunk anyway */
+    static int maxChunk(int average) {
+        return Integer.highestOneBit(average) * 4;
+    }
+
+    /* Returns the next chunk, or null at the end of the stream */
+    byte[] next() throws IOException {
+        fill();
+        if (start == end) {
+            return null;
+        }
+        int len = cut(start, end - start);
+        byte[] chunk = Arrays.copyOfRange(buffer, start, start + len);
+        start += len;
+        return chunk;
+    }
+
+    /* Moves the unread bytes to the front of the buffer and reads until it
+       is full or the stream ends */
+    private void fill() throws IOException {
+        if (end - start >= max || eof) {
+            return;
+        }
+        System.arraycopy(buffer, start, buffer, 0, end - start);
+        end -= start;
+        start = 0;
+        ByteBuffer window = ByteBuffer.wrap(buffer, end, buffer.length - end);
+        while (window.hasRemaining()) {
+            if (in.read(window) < 0) {
+                eof = true;
+                break;
+            }
+        }
+        end = window.position();
+    }
+
+    /* Returns the length of the chunk starting at OFF, given N bytes */
+    private int cut(int off, int n) {
+        if (n <= min) {
+            return n;
+        }
+        int normal = Math.min(n, avg);
+        int limit = Math.min(n, max);
+        long hash = 0;
+        int i = min;
+        for (; i < normal; ++i) {
+            hash = (hash << 1) + GEAR[buffer[off + i] & 0xff];
+            if ((hash & strictMask) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < limit; ++i) {
+            hash = (hash << 1) + GEAR[buffer[off + i] & 0xff];
+            if ((hash & looseMask) == 0) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+}
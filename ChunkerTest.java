@@ -0,0 +1,91 @@
+package gitlet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/* Tests of Chunker: chunks reassemble into the input, and an edit only
+   changes the chunks around it.
+   @author
+ */
+public class ChunkerTest {
+    private static final int AVERAGE = 4096;
+
+    /* The chunks put back together are the input, and none is longer
+       than maxChunk */
+    @Test
+    public void reassembleTest() throws IOException {
+        Random random = new Random(81);
+        for (int size : new int[] {0, 1, AVERAGE, 10 * AVERAGE + 17, 100 * AVERAGE}) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            List<byte[]> chunks = chunks(data);
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            for (byte[] chunk : chunks) {
+                assertTrue(chunk.length > 0);
+                assertTrue(chunk.length <= Chunker.maxChunk(AVERAGE));
+                joined.writeBytes(chunk);
+            }
+            assertArrayEquals(data, joined.toByteArray());
+        }
+    }
+
+    /* Input with no content to cut on, all zeros, is still cut at
+       maxChunk */
+    @Test
+    public void uniformTest() throws IOException {
+        byte[] data = new byte[20 * AVERAGE];
+        for (byte[] chunk : chunks(data)) {
+            assertTrue(chunk.length <= Chunker.maxChunk(AVERAGE));
+        }
+    }
+
+    /* Bytes inserted in the middle of a file leave the chunks away from
+       them unchanged */
+    @Test
+    public void insertTest() throws IOException {
+        Random random = new Random(82);
+        byte[] data = new byte[200 * AVERAGE];
+        random.nextBytes(data);
+        byte[] inserted = new byte[100];
+        random.nextBytes(inserted);
+        int at = data.length / 2;
+        byte[] edited = new byte[data.length + inserted.length];
+        System.arraycopy(data, 0, edited, 0, at);
+        System.arraycopy(inserted, 0, edited, at, inserted.length);
+        System.arraycopy(data, at, edited, at + inserted.length, data.length - at);
+
+        List<byte[]> before = chunks(data);
+        List<byte[]> after = chunks(edited);
+        HashSet<String> ids = new HashSet<>();
+        for (byte[] chunk : before) {
+            ids.add(Utils.sha1(chunk));
+        }
+        int shared = 0;
+        for (byte[] chunk : after) {
+            if (ids.contains(Utils.sha1(chunk))) {
+                shared++;
+            }
+        }
+        assertTrue(shared + " of " + before.size() + " chunks kept",
+                shared >= before.size() - 3);
+    }
+
+    private static List<byte[]> chunks(byte[] data) throws IOException {
+        Chunker chunker = new Chunker(Channels.newChannel(new ByteArrayInputStream(data)), AVERAGE);
+        List<byte[]> chunks = new ArrayList<>();
+        for (byte[] chunk = chunker.next(); chunk != null; chunk = chunker.next()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
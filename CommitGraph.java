@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Content: The commit-graph (.gitlet/commit-graph) describes every commit
+ *          in a fixed-width row, in the same order as the CommitLog, so
+ *          history can be walked without opening any commit object:
+ *
+ *              raw 20-byte commit ID
+ *              4-byte row of the first parent   (NONE for the initial commit)
+ *              4-byte row of the second parent  (NONE unless it is a merge)
+ *              4-byte generation number         (1 + largest of the parents')
+ *              8-byte timestamp                 (seconds since the epoch)
+ *              8-byte offset of its message in commit-graph-messages
+ *
+ *          Messages are kept aside as length-prefixed UTF-8 strings. Both
+ *          files are memory-mapped and only ever appended to, one row per
+ *          commit. If the graph is behind the CommitLog (say, after
+ *          migrate, or a crash that cut a row short), the missing rows are
+ *          filled in when it is opened.
+ */
+
+class CommitGraph implements MergeBase.Graph, MessageIndex.Messages {
+    static final int NONE = -1;
+    private static final int ROW_SIZE = SortedIdFile.ID_LENGTH + 3 * Integer.BYTES
+            + 2 * Long.BYTES;
+    private static final int PARENT = SortedIdFile.ID_LENGTH;
+    private static final int SECOND_PARENT = PARENT + Integer.BYTES;
+    private static final int GENERATION = SECOND_PARENT + Integer.BYTES;
+    private static final int TIME = GENERATION + Integer.BYTES;
+    private static final int MESSAGE = TIME + Long.BYTES;
+
+    private static CommitGraph graph = null;
+    private CommitLog log;
+
+    private final File rowFile = new File(GitLet.REPO + "/commit-graph");
+    private final File messageFile = new File(GitLet.REPO + "/commit-graph-messages");
+    private MappedByteBuffer rows;
+    private MappedByteBuffer messages;
+    private int count;
+
+    private CommitGraph() {
+        long whole = rowFile.length() / ROW_SIZE * ROW_SIZE;
+        if (whole != rowFile.length()) {
+            /* a row cut short by a crash; drop it, so later appends stay
+               aligned. Its message, written first, is just never used. */
+            try (RandomAccessFile raf = new RandomAccessFile(rowFile, "rw")) {
+                raf.setLength(whole);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException("cannot repair " + rowFile + ": "
+                        + excp.getMessage());
+            }
+        }
+        map();
+    }
+
+    /* Returns the graph of the current repository, brought up to date with LOG */
+    static synchronized CommitGraph getGraph(CommitLog log) {
+        if (graph == null) {
+            graph = new CommitGraph();
+            graph.log = log;
+        } else if (graph.rowFile.length() != (long) graph.count * ROW_SIZE) {
+            graph.map();
+        }
+        int logged = log.size();
+        if (graph.count < logged) {
+            List<String> ids = log.ids();
+            for (int i = graph.count; i < logged; ++i) {
+                CommitNode node = (CommitNode) FileUtil.fromByteArr(
+                        GitLet.getObjectStore().read(ids.get(i)));
+                graph.append(node);
+            }
+        }
+        return graph;
+    }
+
+    /* Returns the number of commits in the graph */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /* Returns the row of commit ID, or NONE if it is not in the graph.
+       Rows are looked up in the CommitIndex. */
+    int find(String id) {
+        int row = CommitIndex.getIndex(log).row(id);
+        return row < count ? row : NONE;
+    }
+
+    String id(int row) {
+        byte[] id = new byte[SortedIdFile.ID_LENGTH];
+        rows.get(row * ROW_SIZE, id);
+        return Utils.bytesToHex(id);
+    }
+
+    @Override
+    public int parent(int row) {
+        return rows.getInt(row * ROW_SIZE + PARENT);
+    }
+
+    @Override
+    public int secondParent(int row) {
+        return rows.getInt(row * ROW_SIZE + SECOND_PARENT);
+    }
+
+    @Override
+    public int generation(int row) {
+        return rows.getInt(row * ROW_SIZE + GENERATION);
+    }
+
+    long timestamp(int row) {
+        return rows.getLong(row * ROW_SIZE + TIME);
+    }
+
+    /* Returns the timestamp of ROW formatted as in CommitNode.timeStamp */
+    String timeStamp(int row) {
+        return CommitNode.convertDate(new Date(timestamp(row) * 1000));
+    }
+
+    @Override
+    public String message(int row) {
+        int offset = (int) rows.getLong(row * ROW_SIZE + MESSAGE);
+        byte[] message = new byte[messages.getInt(offset)];
+        messages.get(offset + Integer.BYTES, message);
+        return new String(message, StandardCharsets.UTF_8);
+    }
+
+    /* Adds a row for NODE, whose parents must already be in the graph */
+    void append(CommitNode node) {
+        int parent = node.parentName == null ? NONE : find(node.parentName);
+        int secondParent = node.secondParent == null ? NONE : find(node.secondParent);
+        int generation = 1;
+        if (parent != NONE) {
+            generation = generation(parent) + 1;
+        }
+        if (secondParent != NONE) {
+            generation = Math.max(generation, generation(secondParent) + 1);
+        }
+        byte[] message = node.message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer row = ByteBuffer.allocate(ROW_SIZE);
+        row.put(Utils.hexToBytes(node.commitID));
+        row.putInt(parent).putInt(secondParent).putInt(generation);
+        row.putLong(CommitNode.parseDate(node.timeStamp));
+        row.putLong(messageFile.length());
+        ByteBuffer text = ByteBuffer.allocate(Integer.BYTES + message.length);
+        text.putInt(message.length).put(message);
+        try (FileOutputStream messageOut = new FileOutputStream(messageFile, true);
+             FileOutputStream rowOut = new FileOutputStream(rowFile, true)) {
+            messageOut.write(text.array());
+            rowOut.write(row.array());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        map();
+    }
+
+    /* (Re)maps both files into memory */
+    private void map() {
+        rows = mapFile(rowFile);
+        messages = mapFile(messageFile);
+        count = rows.capacity() / ROW_SIZE;
+    }
+
+    private static MappedByteBuffer mapFile(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, file.exists() ? "r" : "rw")) {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Content: Finds commits by full or abbreviated ID. The commits are kept in
+ *          a SortedIdFile (.gitlet/commit-index), each with its position
+ *          in the CommitLog, which is also its row in the CommitGraph.
+ *          Looking up an ID, or every ID starting with a prefix, is a
+ *          binary search over the mapped file.
+ *
+ *          The index covers the first commits of the log. The commits made
+ *          since are searched in the log itself, which is cheap while there
+ *          are few of them; once there are more than TAIL_LIMIT, they are
+ *          merged into the index in one rewrite. A commit thus costs an
+ *          append, not a rewrite of the whole index.
+ */
+
+class CommitIndex {
+    private static final int RECORD_SIZE = SortedIdFile.ID_LENGTH + Integer.BYTES;
+    private static final int TAIL_LIMIT = 512;
+
+    private static CommitIndex index = null;
+    private final SortedIdFile entries;
+    private final CommitLog log;
+    /* tail: the raw IDs of the commits logged after the indexed ones */
+    private byte[] tail = new byte[0];
+
+    private CommitIndex(CommitLog log) {
+        this.log = log;
+        entries = new SortedIdFile(new File(GitLet.REPO + "/commit-index"), RECORD_SIZE);
+    }
+
+    /* Returns the index of the current repository, brought up to date with LOG */
+    static synchronized CommitIndex getIndex(CommitLog log) {
+        if (index == null) {
+            index = new CommitIndex(log);
+        }
+        index.refresh();
+        return index;
+    }
+
+    /* Reads the commits logged since the last look, and merges them into the
+       index if there are too many */
+    private void refresh() {
+        int indexed = entries.size();
+        int logged = log.size();
+        if (indexed + tail.length / SortedIdFile.ID_LENGTH == logged) {
+            return;
+        }
+        tail = log.raw(indexed, logged);
+        if (logged - indexed <= TAIL_LIMIT) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>();
+        for (int row = indexed; row < logged; ++row) {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            record.put(tail, (row - indexed) * SortedIdFile.ID_LENGTH, SortedIdFile.ID_LENGTH);
+            record.putInt(row);
+            records.add(record.array());
+        }
+        entries.insertAll(records);
+        tail = new byte[0];
+    }
+
+    /* Returns the log position (and commit-graph row) of commit ID, or
+       CommitGraph.NONE if there is no such commit */
+    int row(String id) {
+        if (!isHex(id) || id.length() != 2 * SortedIdFile.ID_LENGTH) {
+            return CommitGraph.NONE;
+        }
+        byte[] raw = Utils.hexToBytes(id);
+        int i = entries.find(raw);
+        if (i >= 0) {
+            return entries.record(i).getInt(0);
+        }
+        for (int t = 0; t < tail.length; t += SortedIdFile.ID_LENGTH) {
+            if (Arrays.equals(tail, t, t + SortedIdFile.ID_LENGTH, raw, 0, raw.length)) {
+                return entries.size() + t / SortedIdFile.ID_LENGTH;
+            }
+        }
+        return CommitGraph.NONE;
+    }
+
+    /* Returns the full IDs of the commits whose ID starts with PREFIX, at
+       most LIMIT of them */
+    List<String> withPrefix(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        prefix = prefix.toLowerCase();
+        if (!isHex(prefix) || prefix.length() > 2 * SortedIdFile.ID_LENGTH) {
+            return result;
+        }
+        StringBuilder low = new StringBuilder(prefix);
+        while (low.length() < 2 * SortedIdFile.ID_LENGTH) {
+            low.append('0');
+        }
+        int i = entries.find(Utils.hexToBytes(low.toString()));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (; i < entries.size() && result.size() < limit; ++i) {
+            String id = Utils.bytesToHex(entries.id(i));
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            result.add(id);
+        }
+        for (int t = 0; t < tail.length && result.size() < limit; t += SortedIdFile.ID_LENGTH) {
+            String id = Utils.bytesToHex(Arrays.copyOfRange(tail, t, t + SortedIdFile.ID_LENGTH));
+            if (id.startsWith(prefix)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            if (Character.digit(s.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Content: The append-only log of every commit ever made (.gitlet/commits),
+ *          oldest first. Each entry is a raw 20-byte commit ID, so making
+ *          a commit appends 20 bytes instead of rewriting the history, and
+ *          the Ith commit sits at byte 20 * I. An entry left incomplete
+ *          by a crash is cut off when the log is opened.
+ */
+
+class CommitLog {
+    private static final int ENTRY_SIZE = SortedIdFile.ID_LENGTH;
+    private final File file;
+
+    CommitLog(File file) {
+        this.file = file;
+        long whole = file.length() / ENTRY_SIZE * ENTRY_SIZE;
+        if (whole != file.length()) {
+            /* an entry cut short by a crash; drop it, so later appends
+               stay aligned */
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(whole);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException("cannot repair " + file + ": "
+                        + excp.getMessage());
+            }
+        }
+    }
+
+    /* Adds commit ID to the end of the log */
+    void append(String id) {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(Utils.hexToBytes(id));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* Returns the number of commits in the log */
+    int size() {
+        return (int) (file.length() / ENTRY_SIZE);
+    }
+
+    /* Returns the ID of the Ith commit made */
+    String get(int i) {
+        byte[] id = new byte[ENTRY_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek((long) i * ENTRY_SIZE);
+            raf.readFully(id);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return Utils.bytesToHex(id);
+    }
+
+    /* Returns the IDs of all commits, oldest first */
+    List<String> ids() {
+        byte[] all = file.isFile() ? Utils.readContents(file) : new byte[0];
+        List<String> result = new ArrayList<>(all.length / ENTRY_SIZE);
+        for (int off = 0; off + ENTRY_SIZE <= all.length; off += ENTRY_SIZE) {
+            result.add(Utils.bytesToHex(Arrays.copyOfRange(all, off, off + ENTRY_SIZE)));
+        }
+        return result;
+    }
+
+    /* Returns the raw IDs of commits FROM (inclusive) to TO (exclusive),
+       back to back */
+    byte[] raw(int from, int to) {
+        byte[] result = new byte[(to - from) * ENTRY_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek((long) from * ENTRY_SIZE);
+            raf.readFully(result);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+}
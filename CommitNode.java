@@ -1,57 +1,82 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.Serializable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
- * Content: Each CommitNode is connected to a database (DataPool)
- *          used to store ALL the information. One can retrieve the
- *          file only through its hashCode (commitID). The only two
- *          functions available for users are addFile and getBlob.
+ * Content: Each CommitNode refers to its files by blob ID only. The
+ *          blobs themselves are shared by all commits and recorded in
+ *          the BlobIndex. One can retrieve the file only through its
+ *          hashCode (fileId). The only two functions available for
+ *          users are addFile and getBlob.
  */
 
-public class CommitNode implements Serializable {
+public class CommitNode {
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    /* Files are hashed and stored this many bytes at a time */
+    private static final int CHUNK = 64 * 1024;
 
     /**
      * parentName: parent's ID.
+     * secondParent: ID of the branch merged in, if this is a merge commit.
      * commitID: the hashCode of the current CommitNode
      * message: the message of the commit
      * timeStamp: creation time
-     * blobs: a DataPool instance containing all the blobs,
-     *        regardless of whether these blobs belong to this commit;
      * fileIds: the hashCode of all the files of the current commit.
      * fileNames: map filenames to fileIds;
      */
 
     String parentName;
+    String secondParent;
     String commitID;
     String message;
     String timeStamp;
-    DataPool blobs;
     //    HashSet<String> trackedFiles;
     HashMap<String, String> fileNames;
 
 //    private static int hash = 0;
 //    private static String hashS = Integer.toString(hash);
 
+    /* Creates an empty commit Node, to be filled in by ObjectCodec */
+    CommitNode() {
+        fileNames = new HashMap<>();
+    }
+
     /* Creates a commit Node */
     public CommitNode(String mes) {
         message = mes;
         timeStamp = convertDate(new Date());
-        blobs = DataPool.getPool();
         fileNames = new HashMap<>();
-        /* this should work practically since timestamp must be unique */
-        commitID = Utils.sha1(parentName + message + timeStamp);
+        commitID = getHash();
     }
 
+    /* Returns the ID of this commit: a hash of its parents, message, time
+       and files. Called again once those are all set, since the time
+       alone (to the second) does not tell apart commits made in quick
+       succession, e.g. by a batch. */
     public String getHash() {
-
-//        byte[] toBeHashed = FileUtil.changeToByteArr(this);
-//        return Utils.sha1(toBeHashed);
-        return "";
+        StringBuilder content = new StringBuilder();
+        content.append(parentName).append('\0').append(secondParent).append('\0')
+                .append(message).append('\0').append(timeStamp).append('\0');
+        for (Map.Entry<String, String> file : new TreeMap<>(fileNames).entrySet()) {
+            content.append(file.getKey()).append('\0').append(file.getValue()).append('\0');
+        }
+        return Utils.sha1(content.toString());
     }
 
     /* Adds a blob to current commit */
@@ -59,10 +84,105 @@ public class CommitNode implements Serializable {
         String fileId = Utils.sha1(blob.content);
         blob.commitId = commitID;
         fileNames.put(blob.filename, fileId);
+        saveBlob(fileId, blob.content);
+    }
+
+    /* Returns the blob ID of FILE, reading it CHUNK bytes at a time */
+    static String hashFile(File file) {
+        MessageDigest digest = sha1Digest();
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (in.read(chunk) >= 0) {
+                digest.update(chunk.array(), 0, chunk.position());
+                chunk.clear();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return Utils.bytesToHex(digest.digest());
+    }
+
+    /* Stores FILE as a blob and returns its ID. The file is hashed,
+       compressed and written CHUNK bytes at a time, so a file of any size
+       is stored in constant memory. Nothing is stored if the blob is
+       already there. If the core.chunkSize setting is on, large files are
+       split into content-defined chunks instead. */
+    static String saveBlob(File file) {
+        int chunkSize = Config.getConfig().chunkSize();
+        if (chunkSize > 0 && file.length() > Chunker.maxChunk(chunkSize)) {
+            return saveChunked(file, chunkSize);
+        }
+        BlobIndex blobs = BlobIndex.getIndex();
+        MessageDigest digest = sha1Digest();
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             ObjectStore.Output out = GitLet.getObjectStore().create()) {
+            long size = in.size();
+            try (OutputStream body = ObjectCodec.blobWriter(out, size,
+                    Config.getConfig().compressionLevel())) {
+                for (long left = size; left > 0; left -= chunk.position()) {
+                    chunk.clear();
+                    chunk.limit((int) Math.min(CHUNK, left));
+                    if (in.read(chunk) < 0) {
+                        throw new IllegalArgumentException(file + " shrank while being stored");
+                    }
+                    digest.update(chunk.array(), 0, chunk.position());
+                    body.write(chunk.array(), 0, chunk.position());
+                }
+            }
+            String fileId = Utils.bytesToHex(digest.digest());
+            if (!blobs.containsKey(fileId)) {
+                out.commit(fileId);
+                blobs.put(fileId, size);
+            }
+            return fileId;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* Stores FILE as chunks of about CHUNKSIZE bytes, each a blob of its
+       own, and a manifest listing them under the ID of the whole file.
+       Chunks already stored for other versions of the file are reused. */
+    private static String saveChunked(File file, int chunkSize) {
+        MessageDigest digest = sha1Digest();
+        ObjectCodec.Manifest manifest = new ObjectCodec.Manifest();
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Chunker chunker = new Chunker(in, chunkSize);
+            for (byte[] chunk = chunker.next(); chunk != null; chunk = chunker.next()) {
+                digest.update(chunk);
+                String chunkId = Utils.sha1(chunk);
+                saveBlob(chunkId, chunk);
+                manifest.chunkIds.add(chunkId);
+                manifest.chunkLengths.add(chunk.length);
+                manifest.length += chunk.length;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        String fileId = Utils.bytesToHex(digest.digest());
+        BlobIndex blobs = BlobIndex.getIndex();
+        if (!blobs.containsKey(fileId)) {
+            GitLet.getObjectStore().write(fileId, ObjectCodec.encode(manifest));
+            blobs.put(fileId, manifest.length);
+        }
+        return fileId;
+    }
+
+    private static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /* Writes CONTENT to the object store as the blob FILEID, unless it is already there */
+    static void saveBlob(String fileId, byte[] content) {
+        BlobIndex blobs = BlobIndex.getIndex();
         if (!blobs.containsKey(fileId)) {
-            File outFile = new File(GitLet.REPO + "/objects/" + fileId);
-            FileUtil.serialize(outFile, blob);
-            blobs.put(fileId, outFile);
+            GitLet.getObjectStore().write(fileId, FileUtil.changeToByteArr(new Blob(null, content)));
+            blobs.put(fileId, content.length);
         }
     }
 
@@ -77,20 +197,83 @@ public class CommitNode implements Serializable {
         }
     }
 
-    /* Retrieves the content of a Blob */
+    /* Retrieves the content of a Blob, joining its chunks if it was stored
+       in chunks. Blobs come from the ObjectCache when they were read
+       recently, so their content must not be changed. */
     public Blob getBlob(String fileId) {
-        File inFile = blobs.get(fileId);
-        return (Blob) FileUtil.deSerialize(inFile);
+        ObjectCache cache = ObjectCache.getCache();
+        Blob blob = (Blob) cache.get(fileId);
+        if (blob == null) {
+            blob = readBlob(fileId);
+            cache.put(fileId, blob, blob.content.length);
+        }
+        return blob;
+    }
+
+    private static Blob readBlob(String fileId) {
+        Object stored = FileUtil.fromByteArr(GitLet.getObjectStore().read(fileId));
+        if (!(stored instanceof ObjectCodec.Manifest)) {
+            return (Blob) stored;
+        }
+        ObjectCodec.Manifest manifest = (ObjectCodec.Manifest) stored;
+        byte[] content = new byte[Math.toIntExact(manifest.length)];
+        int pos = 0;
+        for (String chunkId : manifest.chunkIds) {
+            byte[] chunk = readBlob(chunkId).content;
+            System.arraycopy(chunk, 0, content, pos, chunk.length);
+            pos += chunk.length;
+        }
+        return new Blob(null, content);
+    }
+
+    /* Writes the contents of blob FILEID to TARGET, streaming them out of the
+       object store instead of loading the whole blob first */
+    public void writeBlob(String fileId, File target) {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory()) {
+            dir.mkdirs();
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+            copyBlob(fileId, out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* Copies the contents of blob FILEID to OUT, chunk by chunk if it was
+       stored in chunks */
+    private static void copyBlob(String fileId, OutputStream out) throws IOException {
+        ObjectCodec.Manifest manifest;
+        try (InputStream in = GitLet.getObjectStore().stream(fileId)) {
+            manifest = ObjectCodec.copyBlob(in, out);
+        }
+        if (manifest != null) {
+            for (String chunkId : manifest.chunkIds) {
+                copyBlob(chunkId, out);
+            }
+        }
+    }
+
+    static String convertDate(Date date) {
+        return dateFormat().format(date);
     }
 
-    private String convertDate(Date date) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("yyyy-MM-dd HH:mm:ss");
-        SimpleDateFormat sdf = new SimpleDateFormat(sb.toString());
-        return sdf.format(date);
+    /* Returns a formatter for timestamps; not thread-safe, so callers
+       formatting many dates keep their own */
+    static SimpleDateFormat dateFormat() {
+        return new SimpleDateFormat(DATE_FORMAT);
     }
 
-    static class Blob implements Serializable {
+    /* Returns the time TIMESTAMP stands for, in seconds since the epoch */
+    static long parseDate(String timeStamp) {
+        try {
+            return new SimpleDateFormat(DATE_FORMAT).parse(timeStamp).getTime() / 1000;
+        } catch (ParseException excp) {
+            throw new IllegalArgumentException("bad timestamp " + timeStamp);
+        }
+    }
+
+    static class Blob {
         String filename;
         String commitId;
         byte[] content;
@@ -102,6 +285,13 @@ public class CommitNode implements Serializable {
             File f = new File(filename);
             content = Utils.readContents(f);
         }
+
+        /* Creates a blob holding CONTENT */
+        Blob(String name, byte[] content) {
+            filename = name;
+            commitId = null;
+            this.content = content;
+        }
     }
     public static void main(String[] args) {
         GitLet g = new GitLet();
@@ -1,234 +1,403 @@
 package gitlet;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.Serializable;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
-public class CommitTree implements Serializable {
+public class CommitTree {
     /*  a data structure that holds CommitNodes objects.
-    A headPointer points at the current CommitNode in question
+    A headPointer points at the current CommitNode in question.
+    Nothing here is saved as a whole: each part lives in its own file
+    and is read or written only when a command needs it. Within a
+    RepositorySession, HEAD and the refs are written once, at the end.
+        .gitlet/HEAD            "ref: refs/heads/<current branch>"
+        .gitlet/refs/heads/<b>  the ID of the foremost commit of branch b
+        .gitlet/commits         the CommitLog of every commit ever made
     */
 
     private static final String LOG_FORMAT = "===\nCommit %s\n%s\n%s\n\n";
+    private static final String HEAD_PREFIX = "ref: refs/heads/";
 
     /**
-     * currPtr: the pointer pointing to the foremost node of the branch it belongs
-     * BranchPointers: a map that contains all the pointers, including the above one.
-     *                 It's worth noting that BranchPointers use the name of
-     *                 the branch instead of the commitID to retrieve the commitNode.
-     * nodeIds: the database for CommitNodes.
+     * currPtr: the pointer pointing to the foremost node of the branch it belongs;
+     *          read from the object store the first time it is asked for.
+     * currBranch: the name of the current branch, from HEAD.
+     * nodeIds: the log of all CommitNodes.
+     * refs: branch name -> commit ID of the branches read or changed so
+     *       far; null for a branch that does not exist (or no longer does).
+     * changedRefs, headChanged: what flush has to write.
+     * deferred: true if the tree belongs to a RepositorySession, which
+     *           flushes it when the command is done; otherwise every
+     *           change is written at once.
      */
 
-    CommitNode currPtr;
+    private CommitNode currPtr;
     String currBranch;
-    /* branchPointers maps the name of the branch
-        to the commitId of the foremost node of the branch */
-    HashMap<String, String> branchPointers = new HashMap<>();
-    ArrayList<String> nodeIds = new ArrayList<>();
+    final CommitLog nodeIds = new CommitLog(new File(GitLet.REPO + "/commits"));
+    private final HashMap<String, String> refs = new HashMap<>();
+    private final Set<String> changedRefs = new HashSet<>();
+    private boolean headChanged;
+    boolean deferred;
 
+    /* Creates the tree of a new repository, holding only the initial commit */
     public CommitTree() {
+        new File(GitLet.REPO + "/refs/heads").mkdirs();
         CommitNode initial = new CommitNode("initial commit");
-        CommitNode masterBranchPtr = initial;
-        branchPointers.put("master", initial.commitID);
-        currBranch = "master";
-        currPtr = initial;
+        GitLet.getObjectStore().write(initial.commitID, FileUtil.changeToByteArr(initial));
+        setCurrBranch("master");
         addCommitNode(initial);
-        File outFile = new File(GitLet.REPO + "/objects/" + initial.commitID);
-        FileUtil.serialize(outFile, initial);
+    }
+
+    private CommitTree(String currBranch) {
+        this.currBranch = currBranch;
+    }
+
+    /* Writes HEAD, the refs and the CommitLog of a repository whose tree was
+       saved as a whole, in an older format */
+    static void restore(String currBranch, Map<String, String> branchPointers,
+                        List<String> nodeIds) {
+        new File(GitLet.REPO + "/refs/heads").mkdirs();
+        CommitTree tree = new CommitTree(currBranch);
+        tree.setCurrBranch(currBranch);
+        for (Map.Entry<String, String> branch : branchPointers.entrySet()) {
+            tree.setBranch(branch.getKey(), branch.getValue());
+        }
+        for (String id : nodeIds) {
+            tree.nodeIds.append(id);
+        }
+    }
+
+    /* Returns the tree of the current repository: the one of the open
+       RepositorySession, if any */
+    public static CommitTree load() {
+        RepositorySession session = RepositorySession.current();
+        return session == null ? read() : session.tree();
+    }
+
+    /* Reads the tree of the current repository. Only HEAD is read here;
+       branches are read when first asked for. */
+    static CommitTree read() {
+        File head = new File(GitLet.REPO + "/HEAD");
+        if (!head.isFile()) {
+            throw new GitletException("Repository is in an old format; run 'migrate' first.");
+        }
+        String ref = new String(Utils.readContents(head), StandardCharsets.UTF_8).trim();
+        return new CommitTree(ref.substring(HEAD_PREFIX.length()));
+    }
+
+    /* Returns a copy of this tree, with the changes it has not flushed yet */
+    CommitTree copy() {
+        CommitTree copy = new CommitTree(currBranch);
+        copy.currPtr = currPtr;
+        copy.refs.putAll(refs);
+        copy.changedRefs.addAll(changedRefs);
+        copy.headChanged = headChanged;
+        copy.deferred = deferred;
+        return copy;
+    }
+
+    /* Returns the foremost node of the current branch */
+    public CommitNode getCurrPtr() {
+        if (currPtr == null) {
+            currPtr = getCommitNode(getBranch(currBranch));
+        }
+        return currPtr;
     }
 
     /* getCommitNode retrieves the commitNode corresponding to the commitId passed in */
 
     public CommitNode getCommitNode(String commitId) {
-        File inFile = new File(GitLet.REPO + "/objects/" + commitId);
-        CommitNode commitNode = (CommitNode) FileUtil.deSerialize(inFile);
-        return commitNode;
+        ObjectCache cache = ObjectCache.getCache();
+        CommitNode node = (CommitNode) cache.get(commitId);
+        if (node == null) {
+            byte[] data = GitLet.getObjectStore().read(commitId);
+            node = (CommitNode) FileUtil.fromByteArr(data);
+            cache.put(commitId, node, data.length);
+        }
+        return node;
     }
 
+    /* Makes NEWNODE the foremost commit of the current branch */
     public void addCommitNode(CommitNode newNode) {
-        nodeIds.add(newNode.commitID);
+        CommitGraph graph = getGraph();
+        nodeIds.append(newNode.commitID);
+        graph.append(newNode);
+        MessageIndex.getIndex(graph);
         currPtr = newNode;
-        branchPointers.put(currBranch, newNode.commitID);
+        setBranch(currBranch, newNode.commitID);
+    }
+
+    private static File refFile(String name) {
+        return new File(GitLet.REPO + "/refs/heads/" + name);
+    }
+
+    /* Returns the commit ID branch NAME points at, or null if there is no such branch */
+    public String getBranch(String name) {
+        if (!refs.containsKey(name)) {
+            File ref = refFile(name);
+            refs.put(name, ref.isFile()
+                    ? new String(Utils.readContents(ref), StandardCharsets.UTF_8).trim() : null);
+        }
+        return refs.get(name);
+    }
+
+    /* Returns true if branch NAME exists */
+    public boolean hasBranch(String name) {
+        return getBranch(name) != null;
+    }
+
+    /* Points branch NAME at commit COMMITID */
+    public void setBranch(String name, String commitId) {
+        refs.put(name, commitId);
+        changedRefs.add(name);
+        if (name.equals(currBranch) && currPtr != null && !currPtr.commitID.equals(commitId)) {
+            currPtr = null;
+        }
+        if (!deferred) {
+            flush();
+        }
+    }
+
+    /* Returns the names of all branches, in lexicographic order */
+    public List<String> branchNames() {
+        TreeSet<String> names = new TreeSet<>(Utils.plainFilenamesIn(GitLet.REPO + "/refs/heads"));
+        for (String name : changedRefs) {
+            if (refs.get(name) == null) {
+                names.remove(name);
+            } else {
+                names.add(name);
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /* Makes NAME the current branch */
+    private void setCurrBranch(String name) {
+        currBranch = name;
+        currPtr = null;
+        headChanged = true;
+        if (!deferred) {
+            flush();
+        }
+    }
+
+    /* Writes HEAD and the refs that changed since the last flush */
+    void flush() {
+        if (headChanged) {
+            Utils.writeContents(new File(GitLet.REPO + "/HEAD"),
+                    (HEAD_PREFIX + currBranch + "\n").getBytes(StandardCharsets.UTF_8));
+            headChanged = false;
+        }
+        for (String name : changedRefs) {
+            String commitId = refs.get(name);
+            if (commitId == null) {
+                refFile(name).delete();
+            } else {
+                Utils.writeContents(refFile(name),
+                        (commitId + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        changedRefs.clear();
     }
-//    write content
 
     public void addBranch(String name) {
-        if (branchPointers.containsKey(name)) {
-            System.out.println("A branch with that name already exists.");
-            System.exit(0);
+        if (hasBranch(name)) {
+            throw new GitletException("A branch with that name already exists.");
         }
-        branchPointers.put(name, currPtr.commitID);
+        setBranch(name, getBranch(currBranch));
     }
 
 
     public void rmBranch(String name) {
-        if (!branchPointers.containsKey(name)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+        if (!hasBranch(name)) {
+            throw new GitletException("A branch with that name does not exist.");
         }
         if (name.equals(currBranch)) {
-            System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+            throw new GitletException("Cannot remove the current branch.");
+        }
+        refs.put(name, null);
+        changedRefs.add(name);
+        if (!deferred) {
+            flush();
         }
-        branchPointers.remove(name);
     }
 
-    public void find(String message) {
-        boolean found = false;
-        for (String nodeId : nodeIds) {
-            CommitNode node = getCommitNode(nodeId);
-            if (node.message.equals(message)) {
-                System.out.println(node.commitID);
-                found = true;
-            }
+    /* Returns the full ID of the commit whose ID starts with ABBREV. Throws a
+       GitletException if there is no such commit, or more than one. */
+    String resolveId(String abbrev) {
+        List<String> matches = CommitIndex.getIndex(nodeIds).withPrefix(abbrev, 2);
+        if (matches.isEmpty()) {
+            throw new GitletException("No commit with that id exists.");
+        }
+        if (matches.size() > 1) {
+            throw new GitletException("More than one commit id starts with " + abbrev + ".");
         }
+        return matches.get(0);
+    }
+
+    /* Returns the commit-graph, brought up to date with the commit log */
+    CommitGraph getGraph() {
+        return CommitGraph.getGraph(nodeIds);
+    }
+
+    /* Prints the IDs of the commits whose message is MESSAGE */
+    public void find(String message) {
+        CommitGraph graph = getGraph();
+        printRows(graph, MessageIndex.getIndex(graph).exact(message));
+    }
 
-        if (!found) {
-            System.out.println("Found no commit with that message.");
-            System.exit(0);
+    /* Prints the IDs of the commits whose message holds every word of TEXT
+       (OPTION -w) or holds TEXT itself (OPTION -s) */
+    public void find(String option, String text) {
+        CommitGraph graph = getGraph();
+        MessageIndex index = MessageIndex.getIndex(graph);
+        printRows(graph, option.equals("-w") ? index.words(text) : index.substring(text));
+    }
+
+    private static void printRows(CommitGraph graph, List<Integer> rows) {
+        if (rows.isEmpty()) {
+            throw new GitletException("Found no commit with that message.");
+        }
+        for (int row : rows) {
+            System.out.println(graph.id(row));
         }
     }
 
-    public String log() {
-        CommitNode node = currPtr;
-        String result = "";
-        while (node != null) {
-            result += String.format(LOG_FORMAT, node.commitID, node.timeStamp, node.message);
-            if (node.parentName != null) {
-                node = getCommitNode(node.parentName);
-            } else {
-                node = null;
+    /* Writes the first-parent history of the current branch to OUT, newest
+       first, as limited by OPTIONS. History is walked only as far as needed:
+       it stops after the last commit to print, or at the first commit made
+       before --since. */
+    public void log(PrintWriter out, LogOptions options) {
+        CommitGraph graph = getGraph();
+        SimpleDateFormat dates = CommitNode.dateFormat();
+        int printed = 0;
+        for (int row = graph.find(getBranch(currBranch));
+                row != CommitGraph.NONE && printed < options.limit; row = graph.parent(row)) {
+            long time = graph.timestamp(row);
+            if (time < options.since) {
+                break;
+            }
+            if (options.includes(time)) {
+                writeEntry(out, graph, row, dates);
+                printed++;
             }
         }
-        return result;
     }
 
-    public String globalLog() {
-        String result = "";
-        for (int i = nodeIds.size() - 1; i >= 0; --i) {
-            CommitNode node = getCommitNode(nodeIds.get(i));
-            result += String.format(LOG_FORMAT, node.commitID, node.timeStamp, node.message);
+    /* Writes every commit ever made to OUT, newest first, as limited by
+       OPTIONS. Rows are in commit order, so the walk stops at the first
+       commit made before --since. */
+    public void globalLog(PrintWriter out, LogOptions options) {
+        CommitGraph graph = getGraph();
+        SimpleDateFormat dates = CommitNode.dateFormat();
+        int printed = 0;
+        for (int row = graph.size() - 1; row >= 0 && printed < options.limit; --row) {
+            long time = graph.timestamp(row);
+            if (time < options.since) {
+                break;
+            }
+            if (options.includes(time)) {
+                writeEntry(out, graph, row, dates);
+                printed++;
+            }
         }
-        return result;
+    }
+
+    private static void writeEntry(PrintWriter out, CommitGraph graph, int row,
+                                   SimpleDateFormat dates) {
+        out.printf(LOG_FORMAT, graph.id(row), dates.format(new Date(graph.timestamp(row) * 1000)),
+                graph.message(row));
     }
 
     public void checkoutBranch(String name) {
-        File inFile2 = new File(GitLet.REPO + "/stagingArea");
-        StagingArea stage = (StagingArea) FileUtil.deSerialize(inFile2);
-        File workingDir = new File(System.getProperty("user.dir"));
-        if (!branchPointers.containsKey(name)) {
-            System.out.println("No such branch exists.");
-            System.exit(0);
+        StagingArea stage = StagingArea.load();
+        if (!hasBranch(name)) {
+            throw new GitletException("No such branch exists.");
         }
         if (name.equals(currBranch)) {
-            System.out.println("No need to checkout the current branch.");
-            System.exit(0);
-        }
-        CommitNode branchCommit = getCommitNode(branchPointers.get(name));
-        for (File file : workingDir.listFiles()) {
-            if (!currPtr.fileNames.containsKey(file.getName())
-                    && branchCommit.fileNames.containsKey(file.getName())) {
-                System.out.println("There is an untracked file "
-                        + "in the way; delete it or add it first.");
-                System.exit(0);
-            }
-            if (!branchCommit.fileNames.containsKey(file.getName())) {
-                file.delete();
+            throw new GitletException("No need to checkout the current branch.");
+        }
+        CommitNode branchCommit = getCommitNode(getBranch(name));
+        switchTo(branchCommit, stage);
+        stage.save();
+        setCurrBranch(name);
+        this.currPtr = branchCommit;
+    }
+
+    /* Makes the working directory hold TARGET instead of the current commit
+       and clears STAGE. Only the paths whose blob differs between the two
+       commits are touched: files only the current commit tracks are
+       deleted, and files that are new or changed in TARGET are written.
+       Files the two commits share are left as they are. Exits before
+       touching anything if an untracked file would be overwritten. */
+    void switchTo(CommitNode target, StagingArea stage) {
+        Checkout checkout = new Checkout();
+        CommitNode currPtr = getCurrPtr();
+        List<String> deletes = new ArrayList<>();
+        List<String> writes = new ArrayList<>();
+        for (String file : currPtr.fileNames.keySet()) {
+            if (!target.fileNames.containsKey(file)) {
+                deletes.add(file);
             }
         }
-        for (String filename : branchCommit.fileNames.keySet()) {
-            String fileId = branchCommit.fileNames.get(filename);
-            CommitNode.Blob commitFile = branchCommit.getBlob(fileId);
-            File userFile = new File(filename);
-            if (userFile.exists()) {
-                Utils.writeContents(userFile, commitFile.content);
-            } else {
-                try {
-                    File f = new File(filename);
-                    f.createNewFile();
-                    Utils.writeContents(f, commitFile.content);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+        for (Map.Entry<String, String> file : target.fileNames.entrySet()) {
+            String currId = currPtr.fileNames.get(file.getKey());
+            if (currId == null && new File(file.getKey()).exists()) {
+                throw new GitletException("There is an untracked file "
+                        + "in the way; delete it or add it first.");
+            }
+            if (!file.getValue().equals(currId)) {
+                writes.add(file.getKey());
             }
         }
+        checkout.nextPhase();
+        checkout.delete(deletes);
+        checkout.write(target, writes, stage);
         stage.clearAdd();
         stage.getRemovedFiles().clear();
-        FileUtil.serialize(inFile2, stage);
-        currBranch = name;
-        currPtr = branchCommit;
     }
 
     public void checkoutFile(String filename) {
+        CommitNode currPtr = getCurrPtr();
         if (!currPtr.fileNames.containsKey(filename)) {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw new GitletException("File does not exist in that commit.");
         }
         String fileId = currPtr.fileNames.get(filename);
-        CommitNode.Blob commitFile = currPtr.getBlob(fileId);
-        File userFile = new File(filename);
-        Utils.writeContents(userFile, commitFile.content);
+        currPtr.writeBlob(fileId, new File(filename));
+        WorkingTree.written(filename);
     }
 
     public void checkoutFile(String filename, String commitId) {
-        if (commitId.length() < 40) {
-            for (String hashID: nodeIds) {
-                if (hashID.contains(commitId)) {
-                    commitId = hashID;
-                }
-            }
-        }
-        if (!nodeIds.contains(commitId)) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
-        }
+        commitId = resolveId(commitId);
         CommitNode commit = getCommitNode(commitId);
         if (!commit.fileNames.containsKey(filename)) {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw new GitletException("File does not exist in that commit.");
         }
         String fileId = commit.fileNames.get(filename);
-        CommitNode.Blob commitFile = commit.getBlob(fileId);
-        File userFile = new File(filename);
-        Utils.writeContents(userFile, commitFile.content);
+        commit.writeBlob(fileId, new File(filename));
+        WorkingTree.written(filename);
     }
 
+    /* Returns the ID of the split point (best merge base) of the current
+       branch and BRANCHNAME, or null if BRANCHNAME is already contained
+       in the current branch */
     public String findSplitNode(String branchName) {
-        String givenBranchId = branchPointers.get(branchName);
-        List<String> currBranchHistory = new ArrayList<>();
-        HashSet<String> givenBranchHistory = new HashSet<>();
-        CommitNode tempCurrPtr = currPtr;
-        CommitNode tempGivenPtr = getCommitNode(givenBranchId);
-
-        if (tempCurrPtr.commitID.equals(givenBranchId)) {
+        CommitGraph graph = getGraph();
+        int givenRow = graph.find(getBranch(branchName));
+        int currRow = graph.find(getBranch(currBranch));
+        int split = MergeBase.best(graph, currRow, givenRow);
+        if (split == givenRow || split == CommitGraph.NONE) {
             return null;
         }
-
-        currBranchHistory.add(0, branchPointers.get(currBranch));
-        givenBranchHistory.add(givenBranchId);
-
-        while (tempCurrPtr.parentName != null) {
-            if (givenBranchId.equals(tempCurrPtr.parentName)) {
-                return null;
-            }
-            currBranchHistory.add(tempCurrPtr.parentName);
-            tempCurrPtr = getCommitNode(tempCurrPtr.parentName);
-        }
-
-        while (tempGivenPtr.parentName != null) {
-            givenBranchHistory.add(tempGivenPtr.parentName);
-            tempGivenPtr = getCommitNode(tempGivenPtr.parentName);
-        }
-
-        for (int i = 0; i < currBranchHistory.size(); ++i) {
-            if (givenBranchHistory.contains(currBranchHistory.get(i))) {
-                return currBranchHistory.get(i);
-            }
-        }
-        return null;
+        return graph.id(split);
     }
 }
@@ -0,0 +1,144 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content: Deflate compression for stored objects. Deflater and Inflater
+ *          instances hold native buffers that are costly to create, so
+ *          they are pooled and reset between uses rather than made fresh
+ *          for every object.
+ */
+
+class Compression {
+    private static final int BUFFER_SIZE = 8192;
+    private static final ConcurrentLinkedQueue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    private static Deflater takeDeflater(int level) {
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater();
+        }
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    private static void release(Deflater deflater) {
+        deflater.reset();
+        DEFLATERS.add(deflater);
+    }
+
+    private static Inflater takeInflater() {
+        Inflater inflater = INFLATERS.poll();
+        return inflater == null ? new Inflater() : inflater;
+    }
+
+    private static void release(Inflater inflater) {
+        inflater.reset();
+        INFLATERS.add(inflater);
+    }
+
+    /* Writes DATA[OFF, OFF + LEN) compressed at LEVEL to OUT. */
+    static void deflate(byte[] data, int off, int len, int level, ByteArrayOutputStream out) {
+        Deflater deflater = takeDeflater(level);
+        try {
+            deflater.setInput(data, off, len);
+            deflater.finish();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            release(deflater);
+        }
+    }
+
+    /* Returns DATA compressed at LEVEL. */
+    static byte[] deflate(byte[] data, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        deflate(data, 0, data.length, level, out);
+        return out.toByteArray();
+    }
+
+    /* Inflates the compressed bytes remaining in INPUT straight into OUTPUT,
+       which must be exactly the size of the uncompressed data. */
+    static void inflate(ByteBuffer input, byte[] output) {
+        Inflater inflater = takeInflater();
+        try {
+            inflater.setInput(input);
+            int filled = 0;
+            while (filled < output.length) {
+                int n = inflater.inflate(output, filled, output.length - filled);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalArgumentException("truncated compressed object");
+                }
+                filled += n;
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            release(inflater);
+        }
+    }
+
+    /* Returns a stream that writes what it is given to OUT compressed at
+       LEVEL. Closing it finishes the compressed data and returns its
+       Deflater to the pool, but leaves OUT open. */
+    static OutputStream deflating(OutputStream out, int level) {
+        return new PooledDeflaterOutputStream(out, takeDeflater(level));
+    }
+
+    /* Returns a stream of the uncompressed contents of IN. Closing it closes
+       IN and returns its Inflater to the pool. */
+    static InputStream inflating(InputStream in) {
+        return new PooledInflaterInputStream(in, takeInflater());
+    }
+
+    private static class PooledDeflaterOutputStream extends DeflaterOutputStream {
+        private boolean closed;
+
+        PooledDeflaterOutputStream(OutputStream out, Deflater deflater) {
+            super(out, deflater, BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    finish();
+                } finally {
+                    release(def);
+                }
+            }
+        }
+    }
+
+    private static class PooledInflaterInputStream extends InflaterInputStream {
+        private boolean closed;
+
+        PooledInflaterInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                release(inf);
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+/**
+ * Content: Per-repository settings, kept as key=value lines in
+ *          .gitlet/config and changed with the config command.
+ *
+ *          core.compression: deflate level (0-9) for new objects;
+ *                            0 stores them uncompressed.
+ *          core.chunkSize: average size in bytes of the chunks that
+ *                            large files are split into (a power of
+ *                            two, at least 1024); 0 stores every
+ *                            file as a single blob.
+ *          core.checkoutWorkers: number of threads writing files
+ *                            during checkout; two per core by default.
+ *          core.timings: true to print how long the phases of a
+ *                            checkout take, and how well the object
+ *                            cache did, to standard error.
+ *          core.objectCacheSize: bytes of recently read commits and
+ *                            blobs kept in memory by a command;
+ *                            0 turns the cache off.
+ *          core.diffAlgorithm: myers (the default) or histogram; the
+ *                            line diff used by diff and merge.
+ *          core.bigFileThreshold: objects stored in more bytes than this
+ *                            are left loose by pack, so they can
+ *                            always be streamed instead of being
+ *                            delta-compressed in memory.
+ */
+
+public class Config {
+    static final String COMPRESSION = "core.compression";
+    static final String BIG_FILE_THRESHOLD = "core.bigFileThreshold";
+    static final String CHUNK_SIZE = "core.chunkSize";
+    static final String CHECKOUT_WORKERS = "core.checkoutWorkers";
+    static final String TIMINGS = "core.timings";
+    static final String OBJECT_CACHE_SIZE = "core.objectCacheSize";
+    static final String DIFF_ALGORITHM = "core.diffAlgorithm";
+
+    private static Config config = null;
+    private final File file = new File(GitLet.REPO + "/config");
+    private final Properties values = new Properties();
+
+    /* Only one Config is loaded per process */
+    private Config() {
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                values.load(in);
+            } catch (IOException excp) {
+                throw new GitletException("Cannot read " + file + ": " + excp.getMessage());
+            }
+        }
+    }
+
+    /* Returns the settings of the current repository */
+    public static synchronized Config getConfig() {
+        if (config == null) {
+            config = new Config();
+        }
+        return config;
+    }
+
+    /* Returns the value of KEY, or null if it is not set */
+    public String get(String key) {
+        return values.getProperty(key);
+    }
+
+    /* Returns the value of KEY as an int, or DEFAULTVALUE if it is not set */
+    public int getInt(String key, int defaultValue) {
+        String value = values.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException excp) {
+            return defaultValue;
+        }
+    }
+
+    /* Sets KEY to VALUE and saves the config file. If the file cannot be
+       written, KEY keeps its old value. */
+    public void set(String key, String value) {
+        String old = values.getProperty(key);
+        values.setProperty(key, value);
+        try (OutputStream out = new FileOutputStream(file)) {
+            values.store(out, null);
+        } catch (IOException excp) {
+            if (old == null) {
+                values.remove(key);
+            } else {
+                values.setProperty(key, old);
+            }
+            throw new GitletException("Cannot write " + file + ": " + excp.getMessage());
+        }
+    }
+
+    /* Returns the deflate level to store new objects with */
+    public int compressionLevel() {
+        int level = getInt(COMPRESSION, Deflater.DEFAULT_COMPRESSION);
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        return level;
+    }
+
+    /* Returns the average chunk size to split large files into, or 0 if
+       files are not to be split */
+    public int chunkSize() {
+        int size = getInt(CHUNK_SIZE, 0);
+        if (size <= 0) {
+            return 0;
+        }
+        return Math.max(Integer.highestOneBit(size), 1024);
+    }
+
+    /* Returns the byte budget of the object cache, DEFAULTBUDGET if unset */
+    public long objectCacheSize(long defaultBudget) {
+        String value = get(OBJECT_CACHE_SIZE);
+        if (value == null) {
+            return defaultBudget;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException excp) {
+            return defaultBudget;
+        }
+    }
+
+    /* Returns the line diff algorithm diff and merge use */
+    public Diff.Algorithm diffAlgorithm() {
+        return Diff.algorithm(get(DIFF_ALGORITHM));
+    }
+
+    /* Returns the stored size above which pack leaves an object loose */
+    public long bigFileThreshold() {
+        return getInt(BIG_FILE_THRESHOLD, 512 * 1024 * 1024);
+    }
+}
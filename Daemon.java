@@ -0,0 +1,346 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Content: Serves gitlet commands from a long-running process, so they do
+ *          not pay for starting a JVM and opening the repository each
+ *          time. "gitlet daemon" listens on the Unix domain socket
+ *          .gitlet/daemon.sock until "gitlet daemon stop"; while it runs,
+ *          Main hands every command to it instead of running it itself.
+ *          The commit-graph, the indexes, the pack indexes and the
+ *          ObjectCache stay loaded between commands.
+ *
+ *          A client sends the number of arguments and then each one
+ *          (DataOutput ints and UTF strings). The daemon answers with
+ *          frames: a type byte, OUT or ERR followed by a length and that
+ *          many bytes of output, or EXIT followed by the exit status,
+ *          which ends the answer.
+ *
+ *          Commands that only read the repository (log, global-log, find)
+ *          run concurrently; every other command holds the repository
+ *          alone. Each handler thread has its own standard output and
+ *          error, sent back to its client.
+ */
+
+class Daemon {
+    static final Path SOCKET = Paths.get(GitLet.REPO, "daemon.sock");
+    private static final Set<String> READ_COMMANDS = Set.of("log", "global-log", "find");
+    private static final byte OUT = 1;
+    private static final byte ERR = 2;
+    private static final byte EXIT = 3;
+
+    /* The streams of the command running on each thread; null on threads
+       not serving a client, which write to the daemon's own streams */
+    private static final ThreadLocal<PrintStream> CLIENT_OUT = new ThreadLocal<>();
+    private static final ThreadLocal<PrintStream> CLIENT_ERR = new ThreadLocal<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ServerSocketChannel server;
+
+    private Daemon(ServerSocketChannel server) {
+        this.server = server;
+    }
+
+    /* Runs the daemon of the repository in the working directory until it
+       is told to stop */
+    static void serve() {
+        if (connect() != null) {
+            throw new GitletException("A daemon is already running.");
+        }
+        ServerSocketChannel server;
+        try {
+            Files.deleteIfExists(SOCKET);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(SOCKET));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("cannot listen on " + SOCKET + ": " + excp);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(SOCKET);
+            } catch (IOException excp) {
+                excp.printStackTrace();
+            }
+        }));
+        System.setOut(new PrintStream(new Routed(CLIENT_OUT,
+                new FileOutputStream(FileDescriptor.out)), true));
+        System.setErr(new PrintStream(new Routed(CLIENT_ERR,
+                new FileOutputStream(FileDescriptor.err)), true));
+
+        /* open the repository now, so the first command finds it loaded */
+        catchUp();
+        GitLet.getObjectStore();
+        ObjectCache.getCache();
+        System.out.println("Serving " + System.getProperty("user.dir") + " on " + SOCKET);
+        new Daemon(server).acceptLoop();
+    }
+
+    private void acceptLoop() {
+        ExecutorService handlers = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "gitlet-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            while (true) {
+                SocketChannel client = server.accept();
+                handlers.submit(() -> handle(client));
+            }
+        } catch (ClosedChannelException excp) {
+            /* stopped */
+        } catch (IOException excp) {
+            excp.printStackTrace();
+        } finally {
+            handlers.shutdown();
+            try {
+                Files.deleteIfExists(SOCKET);
+            } catch (IOException excp) {
+                excp.printStackTrace();
+            }
+        }
+    }
+
+    /* Runs the command CLIENT sends and answers it */
+    private void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+            DataOutputStream answer = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(client)));
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; ++i) {
+                args[i] = in.readUTF();
+            }
+            PrintStream out = new PrintStream(new BufferedOutputStream(
+                    new Frames(answer, OUT)), false, StandardCharsets.UTF_8);
+            PrintStream err = new PrintStream(new BufferedOutputStream(
+                    new Frames(answer, ERR)), false, StandardCharsets.UTF_8);
+            CLIENT_OUT.set(out);
+            CLIENT_ERR.set(err);
+            int status = run(args, out, err);
+            CLIENT_OUT.remove();
+            CLIENT_ERR.remove();
+            out.flush();
+            err.flush();
+            synchronized (answer) {
+                answer.writeByte(EXIT);
+                answer.writeInt(status);
+                answer.flush();
+            }
+        } catch (IOException excp) {
+            /* the client went away; nothing to answer */
+        }
+    }
+
+    /* Runs ARGS under the repository lock and returns the exit status */
+    private int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 2 && args[0].equals("daemon") && args[1].equals("stop")) {
+            try {
+                server.close();
+            } catch (IOException excp) {
+                excp.printStackTrace(err);
+            }
+            out.println("Daemon stopped.");
+            return 0;
+        }
+        if (args.length > 0 && args[0].equals("daemon")) {
+            out.println("A daemon is already running.");
+            return 0;
+        }
+        boolean reads = args.length > 0 && READ_COMMANDS.contains(args[0]);
+        Lock held = reads ? lock.readLock() : lock.writeLock();
+        held.lock();
+        try {
+            if (!reads) {
+                /* the working files may have changed since the last command */
+                WorkingTree.forget();
+            }
+            try {
+                Main.run(args);
+            } finally {
+                if (!reads) {
+                    catchUp();
+                }
+            }
+            return 0;
+        } catch (GitletException excp) {
+            out.println(excp.getMessage());
+            return 0;
+        } catch (RuntimeException excp) {
+            excp.printStackTrace(err);
+            return 1;
+        } finally {
+            held.unlock();
+        }
+    }
+
+    /* Brings the commit-graph and the commit and message indexes up to
+       date with the commit log. Only commands holding the write lock
+       append commits, and each catches up before letting go of it, so the
+       commands that share the read lock always find the graph and indexes
+       current: none of them appends a row, merges a tail or remaps a file
+       another reader may be using. */
+    private static void catchUp() {
+        CommitTree tree = CommitTree.load();
+        CommitIndex.getIndex(tree.nodeIds);
+        MessageIndex.getIndex(tree.getGraph());
+    }
+
+    /* Returns a connection to the daemon of the working directory, or null
+       if none is running */
+    private static SocketChannel connect() {
+        if (!Files.exists(SOCKET)) {
+            return null;
+        }
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(SOCKET));
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /* Returns true if a daemon is serving the working directory */
+    static boolean isRunning() {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return false;
+        }
+        try {
+            channel.close();
+        } catch (IOException excp) {
+            excp.printStackTrace();
+        }
+        return true;
+    }
+
+    /* Has the daemon, if one is running, run ARGS, copying its output to
+       this process's. Returns the exit status of the command, or -1 if no
+       daemon is running. */
+    static int forward(String[] args) {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return -1;
+        }
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            DataInputStream answer = new DataInputStream(Channels.newInputStream(channel));
+            byte[] buffer = new byte[8192];
+            while (true) {
+                byte type = answer.readByte();
+                if (type == EXIT) {
+                    int status = answer.readInt();
+                    System.out.flush();
+                    return status;
+                }
+                int length = answer.readInt();
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                answer.readFully(buffer, 0, length);
+                (type == OUT ? System.out : System.err).write(buffer, 0, length);
+            }
+        } catch (EOFException excp) {
+            System.err.println("The daemon closed the connection.");
+            return 1;
+        } catch (IOException excp) {
+            System.err.println("Lost the connection to the daemon: " + excp.getMessage());
+            return 1;
+        }
+    }
+
+    /* Sends what is written to it to a client as frames of one TYPE */
+    private static class Frames extends OutputStream {
+        private final DataOutputStream answer;
+        private final byte type;
+
+        Frames(DataOutputStream answer, byte type) {
+            this.answer = answer;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (answer) {
+                answer.writeByte(type);
+                answer.writeInt(len);
+                answer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (answer) {
+                answer.flush();
+            }
+        }
+    }
+
+    /* Standard output or error of the daemon: writes go to the client of
+       the writing thread, if it has one, and to FALLBACK otherwise */
+    private static class Routed extends OutputStream {
+        private final ThreadLocal<PrintStream> client;
+        private final OutputStream fallback;
+
+        Routed(ThreadLocal<PrintStream> client, OutputStream fallback) {
+            this.client = client;
+            this.fallback = fallback;
+        }
+
+        private OutputStream target() {
+            PrintStream stream = client.get();
+            return stream == null ? fallback : stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+}
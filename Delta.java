@@ -0,0 +1,160 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/**
+ * Content: Binary deltas between two versions of an object. A delta is
+ *          the length of the base and of the result, followed by a list
+ *          of instructions that either COPY a run of bytes out of the base
+ *          or INSERT literal bytes carried in the delta itself. All
+ *          numbers are written as unsigned varints.
+ *
+ *          Deltas are found by indexing the base in BLOCK-byte blocks and
+ *          sliding a rolling hash over the target: wherever the hash hits
+ *          a block of the base, the match is extended as far as it goes
+ *          and emitted as a COPY.
+ */
+
+class Delta {
+    private static final int BLOCK = 16;
+    private static final int COPY = 0;
+    private static final int INSERT = 1;
+    private static final int PRIME = 31;
+    /* PRIME^(BLOCK - 1), used to remove the outgoing byte from the rolling hash */
+    private static final int OUT_FACTOR = power(PRIME, BLOCK - 1);
+
+    /* Returns a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(hash(base, i), i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        int pending = 0;
+        int pos = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (pos + BLOCK <= target.length) {
+            Integer start = blocks.get(h);
+            if (start != null && regionMatches(base, start, target, pos, BLOCK)) {
+                int from = start;
+                int to = pos;
+                /* extend the match backwards into the pending literal bytes */
+                while (from > 0 && to > pending && base[from - 1] == target[to - 1]) {
+                    from--;
+                    to--;
+                }
+                int len = pos - to + BLOCK;
+                while (from + len < base.length && to + len < target.length
+                        && base[from + len] == target[to + len]) {
+                    len++;
+                }
+                writeInsert(out, target, pending, to);
+                writeVarint(out, COPY);
+                writeVarint(out, from);
+                writeVarint(out, len);
+                pos = to + len;
+                pending = pos;
+                if (pos + BLOCK <= target.length) {
+                    h = hash(target, pos);
+                }
+                continue;
+            }
+            if (pos + BLOCK < target.length) {
+                h = (h - target[pos] * OUT_FACTOR) * PRIME + target[pos + BLOCK];
+            }
+            pos++;
+        }
+        writeInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /* Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        int baseLength = readVarint(delta, pos);
+        if (baseLength != base.length) {
+            throw new IllegalArgumentException("delta does not match its base");
+        }
+        byte[] result = new byte[readVarint(delta, pos)];
+        int written = 0;
+        while (pos[0] < delta.length) {
+            int op = readVarint(delta, pos);
+            if (op == COPY) {
+                int from = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, from, result, written, len);
+                written += len;
+            } else {
+                int len = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], result, written, len);
+                pos[0] += len;
+                written += len;
+            }
+        }
+        if (written != result.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /* Writes TARGET[FROM, TO) as an INSERT instruction, if it is not empty. */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] target, int from, int to) {
+        if (to > from) {
+            writeVarint(out, INSERT);
+            writeVarint(out, to - from);
+            out.write(target, from, to - from);
+        }
+    }
+
+    private static boolean regionMatches(byte[] a, int aFrom, byte[] b, int bFrom, int len) {
+        for (int i = 0; i < len; ++i) {
+            if (a[aFrom + i] != b[bFrom + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Returns the hash of the BLOCK bytes of DATA starting at FROM. */
+    private static int hash(byte[] data, int from) {
+        int h = 0;
+        for (int i = from; i < from + BLOCK; ++i) {
+            h = h * PRIME + data[i];
+        }
+        return h;
+    }
+
+    private static int power(int base, int exp) {
+        int result = 1;
+        for (int i = 0; i < exp; ++i) {
+            result *= base;
+        }
+        return result;
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /* Reads a varint from DATA at POS[0], advancing POS[0] past it. */
+    static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        int shift = 0;
+        while (true) {
+            int b = data[pos[0]++];
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Content: Line diffs. Two texts are cut into lines (each keeping its
+ *          line terminator, so joining the lines gives back the exact
+ *          bytes), every distinct line is numbered, and the two number
+ *          sequences are compared. The result is a list of Edits: ranges
+ *          of the first text replaced by ranges of the second, in order.
+ *
+ *          Two algorithms are offered:
+ *
+ *          MYERS finds a shortest edit script with Myers' O(ND) algorithm
+ *          in its linear-space form: the middle snake of an optimal path
+ *          is found by searching from both ends at once, and the two
+ *          halves on either side of it are diffed the same way. Memory is
+ *          linear in the length of the texts, time is O((N + M) D).
+ *
+ *          HISTOGRAM anchors the diff on the rarest lines the two texts
+ *          share: it picks the longest common run starting at a line that
+ *          occurs least often in the first text, splits both texts around
+ *          it, and works on each side. Lines like "}" then never pair up
+ *          unrelated blocks, which usually reads better than MYERS. A
+ *          region with no line rare enough falls back to MYERS.
+ *
+ *          Common leading and trailing lines are stripped before either
+ *          runs, so small edits in long files cost little.
+ */
+
+class Diff {
+    enum Algorithm { MYERS, HISTOGRAM }
+
+    /* Lines occurring more often than this in a region are not used as
+       histogram anchors */
+    private static final int MAX_OCCURRENCES = 64;
+    private static final int CONTEXT = 3;
+
+    /* A range of A replaced by a range of B: lines [aStart, aEnd) of A
+       become lines [bStart, bEnd) of B. One of the ranges may be empty. */
+    static class Edit {
+        final int aStart;
+        final int aEnd;
+        final int bStart;
+        final int bEnd;
+
+        Edit(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+    }
+
+    /* A text cut into lines, each line kept as an ISO-8859-1 string of its
+       bytes so any content, text or not, goes through unchanged */
+    static class Text {
+        final String[] lines;
+
+        Text(byte[] content) {
+            List<String> lines = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < content.length; ++i) {
+                if (content[i] == '\n') {
+                    lines.add(new String(content, start, i + 1 - start,
+                            StandardCharsets.ISO_8859_1));
+                    start = i + 1;
+                }
+            }
+            if (start < content.length) {
+                lines.add(new String(content, start, content.length - start,
+                        StandardCharsets.ISO_8859_1));
+            }
+            this.lines = lines.toArray(new String[0]);
+        }
+
+        int size() {
+            return lines.length;
+        }
+    }
+
+    /* Numbers the lines of several texts, equal lines alike */
+    static class Interner {
+        private final HashMap<String, Integer> ids = new HashMap<>();
+
+        int[] ids(Text text) {
+            int[] result = new int[text.size()];
+            for (int i = 0; i < result.length; ++i) {
+                Integer id = ids.putIfAbsent(text.lines[i], ids.size());
+                result[i] = id == null ? ids.size() - 1 : id;
+            }
+            return result;
+        }
+    }
+
+    private final int[] a;
+    private final int[] b;
+    private final List<Edit> edits = new ArrayList<>();
+
+    private Diff(int[] a, int[] b) {
+        this.a = a;
+        this.b = b;
+    }
+
+    /* Returns the edits turning A into B */
+    static List<Edit> diff(Text a, Text b, Algorithm algorithm) {
+        Interner interner = new Interner();
+        return diff(interner.ids(a), interner.ids(b), algorithm);
+    }
+
+    /* Returns the edits turning the line numbers A into B */
+    static List<Edit> diff(int[] a, int[] b, Algorithm algorithm) {
+        Diff diff = new Diff(a, b);
+        if (algorithm == Algorithm.HISTOGRAM) {
+            diff.histogram(0, a.length, 0, b.length);
+        } else {
+            diff.myers(0, a.length, 0, b.length);
+        }
+        return diff.edits;
+    }
+
+    /* Returns the algorithm named NAME (case ignored), or MYERS if NAME is
+       null or unknown */
+    static Algorithm algorithm(String name) {
+        if (name != null && name.equalsIgnoreCase("histogram")) {
+            return Algorithm.HISTOGRAM;
+        }
+        return Algorithm.MYERS;
+    }
+
+    /* Records that [aLo, aHi) becomes [bLo, bHi), joining it to the last
+       edit if they touch */
+    private void add(int aLo, int aHi, int bLo, int bHi) {
+        if (aLo == aHi && bLo == bHi) {
+            return;
+        }
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.aEnd == aLo && last.bEnd == bLo) {
+                edits.set(edits.size() - 1, new Edit(last.aStart, aHi, last.bStart, bHi));
+                return;
+            }
+        }
+        edits.add(new Edit(aLo, aHi, bLo, bHi));
+    }
+
+    private void myers(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo++;
+            bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi--;
+            bHi--;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            add(aLo, aHi, bLo, bHi);
+            return;
+        }
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int[] forward = new int[2 * maxD + 2];
+        int[] backward = new int[2 * maxD + 2];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        /* with an odd delta the paths meet while searching forward */
+        boolean front = (delta & 1) != 0;
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        for (int d = 0; d < maxD; ++d) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int i1 = offset + k1;
+                int x1 = k1 == -d || (k1 != d && forward[i1 - 1] < forward[i1 + 1])
+                        ? forward[i1 + 1] : forward[i1 - 1] + 1;
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++;
+                    y1++;
+                }
+                forward[i1] = x1;
+                if (x1 > n) {
+                    k1end += 2;
+                } else if (y1 > m) {
+                    k1start += 2;
+                } else if (front) {
+                    int i2 = offset + delta - k1;
+                    if (i2 >= 0 && i2 < backward.length && backward[i2] != -1
+                            && x1 >= n - backward[i2]) {
+                        split(aLo, aHi, bLo, bHi, x1, y1);
+                        return;
+                    }
+                }
+            }
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int i2 = offset + k2;
+                int x2 = k2 == -d || (k2 != d && backward[i2 - 1] < backward[i2 + 1])
+                        ? backward[i2 + 1] : backward[i2 - 1] + 1;
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - 1 - x2] == b[bHi - 1 - y2]) {
+                    x2++;
+                    y2++;
+                }
+                backward[i2] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int i1 = offset + delta - k2;
+                    if (i1 >= 0 && i1 < forward.length && forward[i1] != -1) {
+                        int x1 = forward[i1];
+                        int y1 = offset + x1 - i1;
+                        if (x1 >= n - x2) {
+                            split(aLo, aHi, bLo, bHi, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+        /* nothing in common */
+        add(aLo, aHi, bLo, bHi);
+    }
+
+    /* Diffs the regions before and after the point (X, Y) of the middle snake */
+    private void split(int aLo, int aHi, int bLo, int bHi, int x, int y) {
+        myers(aLo, aLo + x, bLo, bLo + y);
+        myers(aLo + x, aHi, bLo + y, bHi);
+    }
+
+    private void histogram(int aLo, int aHi, int bLo, int bHi) {
+        /* the region after each anchor is handled by looping, not recursing,
+           so long files with many edits do not nest deeply */
+        while (true) {
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                add(aLo, aHi, bLo, bHi);
+                return;
+            }
+            int[] anchor = anchor(aLo, aHi, bLo, bHi);
+            if (anchor == null) {
+                myers(aLo, aHi, bLo, bHi);
+                return;
+            }
+            histogram(aLo, anchor[0], bLo, anchor[2]);
+            aLo = anchor[1];
+            bLo = anchor[3];
+        }
+    }
+
+    /* Returns the longest run of lines common to both regions that starts
+       at a line occurring least often in the A region, as {aStart, aEnd,
+       bStart, bEnd}, or null if the regions share no line occurring at
+       most MAX_OCCURRENCES times */
+    private int[] anchor(int aLo, int aHi, int bLo, int bHi) {
+        /* where each line occurs in the A region, newest first */
+        HashMap<Integer, int[]> occurrences = new HashMap<>();
+        int[] next = new int[aHi - aLo];
+        for (int i = aHi - 1; i >= aLo; --i) {
+            int[] head = occurrences.get(a[i]);
+            if (head == null) {
+                occurrences.put(a[i], new int[] {i, 1});
+                next[i - aLo] = -1;
+            } else {
+                next[i - aLo] = head[0];
+                head[0] = i;
+                head[1]++;
+            }
+        }
+        int[] best = null;
+        int bestCount = MAX_OCCURRENCES + 1;
+        for (int j = bLo; j < bHi; ) {
+            int[] head = occurrences.get(b[j]);
+            if (head == null || head[1] > MAX_OCCURRENCES || head[1] > bestCount) {
+                j++;
+                continue;
+            }
+            int nextJ = j + 1;
+            for (int i = head[0]; i >= 0; i = next[i - aLo]) {
+                int as = i;
+                int bs = j;
+                int ae = i + 1;
+                int be = j + 1;
+                while (as > aLo && bs > bLo && a[as - 1] == b[bs - 1]) {
+                    as--;
+                    bs--;
+                }
+                while (ae < aHi && be < bHi && a[ae] == b[be]) {
+                    ae++;
+                    be++;
+                }
+                int count = head[1];
+                if (count < bestCount || (count == bestCount && ae - as > best[1] - best[0])) {
+                    best = new int[] {as, ae, bs, be};
+                    bestCount = count;
+                }
+                nextJ = Math.max(nextJ, be);
+            }
+            j = nextJ;
+        }
+        return best;
+    }
+
+    /* Writes the EDITS turning A into B to OUT in unified format, with three
+       lines of context around each change. APATH and BPATH name the two
+       sides; null stands for a missing file. */
+    static void writeUnified(OutputStream out, String aPath, String bPath, Text a, Text b,
+                             List<Edit> edits) throws IOException {
+        if (edits.isEmpty()) {
+            return;
+        }
+        String name = aPath != null ? aPath : bPath;
+        write(out, "diff --gitlet a/" + name + " b/" + name + "\n");
+        write(out, "--- " + (aPath == null ? "/dev/null" : "a/" + aPath) + "\n");
+        write(out, "+++ " + (bPath == null ? "/dev/null" : "b/" + bPath) + "\n");
+        int first = 0;
+        while (first < edits.size()) {
+            int last = first;
+            while (last + 1 < edits.size()
+                    && edits.get(last + 1).aStart - edits.get(last).aEnd <= 2 * CONTEXT) {
+                last++;
+            }
+            Edit head = edits.get(first);
+            Edit tail = edits.get(last);
+            int aStart = Math.max(0, head.aStart - CONTEXT);
+            int bStart = head.bStart - (head.aStart - aStart);
+            int aEnd = Math.min(a.size(), tail.aEnd + CONTEXT);
+            int bEnd = tail.bEnd + (aEnd - tail.aEnd);
+            write(out, "@@ -" + range(aStart, aEnd) + " +" + range(bStart, bEnd) + " @@\n");
+            int ai = aStart;
+            for (int e = first; e <= last; ++e) {
+                Edit edit = edits.get(e);
+                for (; ai < edit.aStart; ++ai) {
+                    writeLine(out, ' ', a.lines[ai]);
+                }
+                for (int i = edit.aStart; i < edit.aEnd; ++i) {
+                    writeLine(out, '-', a.lines[i]);
+                }
+                for (int i = edit.bStart; i < edit.bEnd; ++i) {
+                    writeLine(out, '+', b.lines[i]);
+                }
+                ai = edit.aEnd;
+            }
+            for (; ai < aEnd; ++ai) {
+                writeLine(out, ' ', a.lines[ai]);
+            }
+            first = last + 1;
+        }
+    }
+
+    /* Formats lines [START, END) as a hunk range: 1-based start, length */
+    private static String range(int start, int end) {
+        int length = end - start;
+        return (length == 0 ? start : start + 1) + "," + length;
+    }
+
+    private static void writeLine(OutputStream out, char prefix, String line) throws IOException {
+        out.write(prefix);
+        out.write(line.getBytes(StandardCharsets.ISO_8859_1));
+        if (!line.endsWith("\n")) {
+            write(out, "\n\\ No newline at end of file\n");
+        }
+    }
+
+    private static void write(OutputStream out, String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,176 @@
+package gitlet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/* Tests of Diff: edit scripts are minimal and rebuild the new version.
+   @author
+ */
+public class DiffTest {
+
+    /* MYERS finds a shortest edit script: as many lines kept as the
+       longest common subsequence, checked on random texts of few
+       distinct lines so there is plenty to match */
+    @Test
+    public void myersMinimalTest() {
+        Random random = new Random(61);
+        for (int round = 0; round < 300; ++round) {
+            int[] a = randomLines(random, random.nextInt(40), 4);
+            int[] b = randomLines(random, random.nextInt(40), 4);
+            List<Diff.Edit> edits = Diff.diff(a, b, Diff.Algorithm.MYERS);
+            assertEquals(a.length + b.length - 2 * lcs(a, b), cost(edits));
+            assertRebuilds(a, b, edits);
+        }
+    }
+
+    /* Both algorithms give edits, in order and apart, that turn A into B */
+    @Test
+    public void rebuildTest() {
+        Random random = new Random(62);
+        for (Diff.Algorithm algorithm : Diff.Algorithm.values()) {
+            for (int round = 0; round < 300; ++round) {
+                int[] a = randomLines(random, random.nextInt(60), 1 + random.nextInt(20));
+                int[] b = mutate(random, a);
+                List<Diff.Edit> edits = Diff.diff(a, b, algorithm);
+                assertRebuilds(a, b, edits);
+                for (int k = 1; k < edits.size(); ++k) {
+                    assertTrue(edits.get(k - 1).aEnd < edits.get(k).aStart
+                            || edits.get(k - 1).bEnd < edits.get(k).bStart);
+                }
+            }
+        }
+    }
+
+    /* Equal texts have no edits; an empty side is one whole edit */
+    @Test
+    public void emptyTest() {
+        int[] a = {1, 2, 3};
+        for (Diff.Algorithm algorithm : Diff.Algorithm.values()) {
+            assertTrue(Diff.diff(a, a.clone(), algorithm).isEmpty());
+            assertTrue(Diff.diff(new int[0], new int[0], algorithm).isEmpty());
+            List<Diff.Edit> added = Diff.diff(new int[0], a, algorithm);
+            assertEquals(1, added.size());
+            assertEquals(3, added.get(0).bEnd - added.get(0).bStart);
+            List<Diff.Edit> removed = Diff.diff(a, new int[0], algorithm);
+            assertEquals(1, removed.size());
+            assertEquals(3, removed.get(0).aEnd - removed.get(0).aStart);
+        }
+    }
+
+    /* The unified format: headers, hunk ranges, context and a missing
+       final newline */
+    @Test
+    public void unifiedTest() throws IOException {
+        Diff.Text a = text("a\nb\nc\nd\ne\nf\ng\nh\n");
+        Diff.Text b = text("a\nb\nc\nd\nE\nf\ng\nh");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Diff.writeUnified(out, "f.txt", "f.txt", a, b, Diff.diff(a, b, Diff.Algorithm.MYERS));
+        assertEquals("diff --gitlet a/f.txt b/f.txt\n"
+                + "--- a/f.txt\n"
+                + "+++ b/f.txt\n"
+                + "@@ -2,7 +2,7 @@\n"
+                + " b\n c\n d\n-e\n+E\n f\n g\n"
+                + "-h\n"
+                + "+h\n\\ No newline at end of file\n",
+                out.toString(StandardCharsets.ISO_8859_1));
+
+        out.reset();
+        Diff.writeUnified(out, null, "new.txt", text(""), text("x\n"),
+                Diff.diff(text(""), text("x\n"), Diff.Algorithm.MYERS));
+        assertEquals("diff --gitlet a/new.txt b/new.txt\n"
+                + "--- /dev/null\n"
+                + "+++ b/new.txt\n"
+                + "@@ -0,0 +1,1 @@\n"
+                + "+x\n",
+                out.toString(StandardCharsets.ISO_8859_1));
+    }
+
+    private static Diff.Text text(String s) {
+        return new Diff.Text(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static int[] randomLines(Random random, int n, int distinct) {
+        int[] lines = new int[n];
+        for (int i = 0; i < n; ++i) {
+            lines[i] = random.nextInt(distinct);
+        }
+        return lines;
+    }
+
+    /* Returns A with a few lines deleted, inserted or changed */
+    private static int[] mutate(Random random, int[] a) {
+        int[] b = a.clone();
+        int changes = random.nextInt(6);
+        for (int c = 0; c < changes; ++c) {
+            int at = random.nextInt(b.length + 1);
+            int kind = random.nextInt(3);
+            if (kind == 0 && at < b.length) {
+                int[] shorter = new int[b.length - 1];
+                System.arraycopy(b, 0, shorter, 0, at);
+                System.arraycopy(b, at + 1, shorter, at, b.length - at - 1);
+                b = shorter;
+            } else if (kind == 1) {
+                int[] longer = new int[b.length + 1];
+                System.arraycopy(b, 0, longer, 0, at);
+                longer[at] = 100 + random.nextInt(5);
+                System.arraycopy(b, at, longer, at + 1, b.length - at);
+                b = longer;
+            } else if (at < b.length) {
+                b[at] = 100 + random.nextInt(5);
+            }
+        }
+        return b;
+    }
+
+    /* Returns the number of lines deleted and inserted by EDITS */
+    private static int cost(List<Diff.Edit> edits) {
+        int cost = 0;
+        for (Diff.Edit e : edits) {
+            cost += (e.aEnd - e.aStart) + (e.bEnd - e.bStart);
+        }
+        return cost;
+    }
+
+    /* Returns the length of the longest common subsequence of A and B */
+    private static int lcs(int[] a, int[] b) {
+        int[][] len = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; --i) {
+            for (int j = b.length - 1; j >= 0; --j) {
+                len[i][j] = a[i] == b[j] ? len[i + 1][j + 1] + 1
+                        : Math.max(len[i + 1][j], len[i][j + 1]);
+            }
+        }
+        return len[0][0];
+    }
+
+    /* Asserts that applying EDITS to A gives B */
+    private static void assertRebuilds(int[] a, int[] b, List<Diff.Edit> edits) {
+        int[] rebuilt = new int[b.length];
+        int n = 0;
+        int ai = 0;
+        for (Diff.Edit e : edits) {
+            assertTrue(e.aStart >= ai && e.aEnd >= e.aStart && e.bEnd >= e.bStart);
+            assertEquals(n + (e.aStart - ai), e.bStart);
+            while (ai < e.aStart) {
+                rebuilt[n++] = a[ai++];
+            }
+            for (int j = e.bStart; j < e.bEnd; ++j) {
+                rebuilt[n++] = b[j];
+            }
+            ai = e.aEnd;
+        }
+        while (ai < a.length) {
+            rebuilt[n++] = a[ai++];
+        }
+        assertEquals(b.length, n);
+        assertTrue(Arrays.equals(b, rebuilt));
+    }
+}
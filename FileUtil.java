@@ -1,49 +1,24 @@
 package gitlet;
 
-
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
-/* Functions to deserialize and serialize files */
+/* Functions to deserialize and serialize files. The encoding itself is
+   done by ObjectCodec. */
 public class FileUtil {
 
     public static void serialize(File outFile, Object obj) {
-        try {
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(outFile));
-            out.writeObject(obj);
-            out.close();
-        } catch (IOException excp) {
-            excp.printStackTrace();
-        }
+        Utils.writeContents(outFile, ObjectCodec.encode(obj));
     }
 
     public static Object deSerialize(File inFile) {
-        try {
-            ObjectInputStream inp = new ObjectInputStream(new FileInputStream(inFile));
-            Object obj = inp.readObject();
-            inp.close();
-            return obj;
-        } catch (IOException | ClassNotFoundException excp) {
-            excp.printStackTrace();
-        }
-        return null;
+        return ObjectCodec.decode(Utils.readContents(inFile));
     }
 
     public static byte[] changeToByteArr(Object obj) {
-        try {
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            ObjectOutputStream objectStream = new ObjectOutputStream(stream);
-            objectStream.writeObject(obj);
-            objectStream.close();
-            return stream.toByteArray();
-        } catch (IOException excp) {
-            excp.printStackTrace();
-        }
-        return null;
+        return ObjectCodec.encode(obj);
+    }
+
+    public static Object fromByteArr(byte[] bytes) {
+        return ObjectCodec.decode(bytes);
     }
 }
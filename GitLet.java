@@ -1,11 +1,24 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /* Performs the functionality of Main class. Avoids having the Main class become too clustered. */
 public class GitLet {
@@ -15,54 +28,55 @@ public class GitLet {
     private static String WORKING_DIR = System.getProperty("user.dir");
     public static final String REPO = ".gitlet";
     private static boolean merged = true;
+    private static PackedObjectStore objectStore = null;
+
+    /* Returns the store holding the objects (commits and blobs) of the repository. */
+    public static synchronized ObjectStore getObjectStore() {
+        if (objectStore == null) {
+            objectStore = new PackedObjectStore(new File(REPO + "/objects"));
+        }
+        return objectStore;
+    }
 
     /* Creates a new gitlet version-control system in the current directory. */
     public void init() {
         GIT_DIR = new File(REPO);
         if (GIT_DIR.exists()) {
-            System.out.println("A gitlet version-control system "
+            throw new GitletException("A gitlet version-control system "
                     + "already exists in the current directory.");
-            System.exit(0);
         }
         GIT_DIR.mkdir();
 
         OBJ_DIR = new File(REPO + "/objects");
         OBJ_DIR.mkdir();
 
-        CommitTree tree = new CommitTree();
-        File cTree = new File(REPO + "/commitTree");
-        FileUtil.serialize(cTree, tree);
+        new CommitTree();
 
         StagingArea stage = StagingArea.getStagingArea();
-        File sArea = new File(REPO + "/stagingArea");
-        FileUtil.serialize(sArea, stage);
-
-        DataPool data = DataPool.getPool();
-        File dPool = new File(REPO + "/objects/dataPool");
-        FileUtil.serialize(dPool, data);
+        stage.save();
     }
 
     public void commit(String commitMessage) {
+        commit(commitMessage, null);
+    }
+
+    private void commit(String commitMessage, String secondParent) {
         /* Saves a snapshot of certain files in the current commit
           and staging area so they can be restored at a later time,
-          creating a new commit. */
-        File inFile = new File(REPO + "/stagingArea");
-        StagingArea stage = (StagingArea) FileUtil.deSerialize(inFile);
+          creating a new commit. SECONDPARENT is the merged-in commit
+          of a merge, or null. */
+        StagingArea stage = StagingArea.load();
         if (commitMessage.length() == 0) {
-            System.out.println("Please enter a commit message.");
-            System.exit(0);
+            throw new GitletException("Please enter a commit message.");
         } else if (stage.getAddedSize() == 0 && stage.getRemovedSize() == 0) {
-            System.out.println("No changes added to the commit.");
-            System.exit(0);
+            throw new GitletException("No changes added to the commit.");
         }
-        stage.commit(commitMessage);
-        File sArea = new File(REPO + "/stagingArea");
-        FileUtil.serialize(sArea, stage);
+        stage.commit(commitMessage, secondParent);
+        stage.save();
     }
 
     public void checkout(String[] commands) {
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
+        CommitTree tree = CommitTree.load();
 
         if (commands.length == 2) {
             /* java gitlet.Main checkout [branch name] */
@@ -75,89 +89,31 @@ public class GitLet {
             tree.checkoutFile(commands[3], commands[1]);
         } else {
             /* Undefined method */
-            System.out.println("Check git --help for help");
-            System.exit(0);
+            throw new GitletException("Check git --help for help");
         }
-        FileUtil.serialize(inFile, tree);
     }
 
     public void reset(String commitID) {
 //        may need to check on reset edge case. If rm file.
-        File inTree = new File(REPO + "/commitTree");
-        File inStage = new File(REPO + "/stagingArea");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inTree);
-        StagingArea stage = (StagingArea) FileUtil.deSerialize(inStage);
-
-        if (commitID.length() < 40) {
-            for (String id: tree.nodeIds) {
-                if (id.contains(commitID)) {
-                    commitID = id;
-                }
-            }
-        }
-
-        if (!tree.nodeIds.contains(commitID)) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
-        }
+        CommitTree tree = CommitTree.load();
+        StagingArea stage = StagingArea.load();
 
+        commitID = tree.resolveId(commitID);
         CommitNode givenCommitNode = tree.getCommitNode(commitID);
-
-        for (String filename : givenCommitNode.fileNames.keySet()) {
-            String fileId = givenCommitNode.fileNames.get(filename);
-            CommitNode.Blob commitFile = givenCommitNode.getBlob(fileId);
-            File userFile = new File(filename);
-            if (userFile.exists()) {
-                if (!tree.currPtr.fileNames.containsKey(filename)) {
-                    System.out.println("There is an untracked file "
-                            + "in the way; delete it or add it first.");
-                    System.exit(0);
-                } else {
-                    Utils.writeContents(userFile, commitFile.content);
-                }
-            } else {
-                try {
-                    File f = new File(filename);
-                    f.createNewFile();
-                    Utils.writeContents(f, commitFile.content);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-
-   /*     for (String trackedFile : trackedFiles) {
-            if (!givenCommitNode.fileNames.keySet().contains(trackedFile)) {
-                stage.rm(trackedFile);
-            } else {
-                File track = new File(trackedFile);
-                Utils.writeContents(track,
-                        givenCommitNode.getBlob(givenCommitNode.getFileId(trackedFile)).content);
-            }
-        }
-*/
-        tree.branchPointers.put(tree.currBranch, commitID);
-        tree.currPtr = tree.getCommitNode(commitID);
-        stage.clearAdd();
-//        Do i clear removedFiles from stage too??
-
-        File cTree = new File(REPO + "/commitTree");
-        FileUtil.serialize(cTree, tree);
-        File sArea = new File(REPO + "/stagingArea");
-        FileUtil.serialize(sArea, stage);
+        tree.switchTo(givenCommitNode, stage);
+        tree.setBranch(tree.currBranch, commitID);
+        stage.save();
     }
 
     public void status() {
         /* Displays what branches currently exist, and marks the current branch with a *.
            Also displays what files have been staged or marked for untracking. */
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
-        File inFile2 = new File(REPO + "/stagingArea");
-        StagingArea stage = (StagingArea) FileUtil.deSerialize(inFile2);
+        CommitTree tree = CommitTree.load();
+        StagingArea stage = StagingArea.load();
         statusHelper("Branches");
         String currBranchName = tree.currBranch;
         System.out.println("*" + currBranchName);
-        for (String branchName : tree.branchPointers.keySet()) {
+        for (String branchName : tree.branchNames()) {
             if (!branchName.equals(currBranchName)) {
                 System.out.println(branchName);
             }
@@ -169,46 +125,152 @@ public class GitLet {
         }
         System.out.println();
         statusHelper("Removed Files");
-        for (String removedFile : stage.getRemovedFiles()) {
+        for (String removedFile : new TreeSet<>(stage.getRemovedFiles())) {
             System.out.println(removedFile);
         }
         System.out.println();
         statusHelper("Modifications Not Staged For Commit");
+        CommitNode curr = tree.getCurrPtr();
+        for (String modifiedFile : stage.modifiedFiles(curr)) {
+            System.out.println(modifiedFile);
+        }
         System.out.println();
         statusHelper("Untracked Files");
+        for (String untrackedFile : stage.untrackedFiles(curr)) {
+            System.out.println(untrackedFile);
+        }
         System.out.println();
+        if (stage.isRefreshed()) {
+            /* keep the hashes, so the next status does not redo them */
+            stage.save();
+        }
     }
 
     private static void statusHelper(String name) {
         System.out.println("=== " + name + " ===");
     }
 
-    public void log() {
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
-        System.out.println(tree.log());
+    /* Prints the history of the current branch; OPTIONS are the operands
+       of log (see LogOptions) */
+    public void log(String... options) {
+        CommitTree tree = CommitTree.load();
+        PrintWriter out = stdout();
+        tree.log(out, LogOptions.parse(options));
+        out.println();
+        out.flush();
+    }
+
+    public void globalLog(String... options) {
+        CommitTree tree = CommitTree.load();
+        PrintWriter out = stdout();
+        tree.globalLog(out, LogOptions.parse(options));
+        out.println();
+        out.flush();
     }
 
-    public void globalLog() {
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
-        String globalLog = tree.globalLog();
-        System.out.println(globalLog);
+    /* Returns a buffered writer to standard output, for commands printing
+       a lot; callers flush it when done */
+    private static PrintWriter stdout() {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
     }
 
     public void find(String commitMessage) {
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
+        CommitTree tree = CommitTree.load();
         tree.find(commitMessage);
     }
 
+    /* Finds commits by the words (-w) or text (-s) in their message */
+    public void find(String option, String text) {
+        CommitTree tree = CommitTree.load();
+        tree.find(option, text);
+    }
+
+    /* Prints line diffs in unified format. With no OPERANDS, of the working
+       files against the stage, or the current commit for files not staged;
+       with --cached, of the stage against the current commit. Given a
+       commit, the working files (or with --cached, the stage) are diffed
+       against it instead. --histogram and --myers override the
+       core.diffAlgorithm setting. Untracked files are left out. */
+    public void diff(String... operands) {
+        boolean cached = false;
+        Diff.Algorithm algorithm = Config.getConfig().diffAlgorithm();
+        String commitId = null;
+        for (String operand : operands) {
+            if (operand.equals("--cached")) {
+                cached = true;
+            } else if (operand.equals("--histogram")) {
+                algorithm = Diff.Algorithm.HISTOGRAM;
+            } else if (operand.equals("--myers")) {
+                algorithm = Diff.Algorithm.MYERS;
+            } else if (operand.startsWith("-") || commitId != null) {
+                throw new GitletException("Incorrect operands.");
+            } else {
+                commitId = operand;
+            }
+        }
+        CommitTree tree = CommitTree.load();
+        StagingArea stage = StagingArea.load();
+        CommitNode curr = tree.getCurrPtr();
+        Map<String, String> index = stage.nextCommit(curr);
+        Map<String, String> base;
+        if (commitId != null) {
+            base = tree.getCommitNode(tree.resolveId(commitId)).fileNames;
+        } else {
+            base = cached ? curr.fileNames : index;
+        }
+        TreeSet<String> fileNames = new TreeSet<>(base.keySet());
+        fileNames.addAll(index.keySet());
+        OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+        try {
+            for (String file : fileNames) {
+                String oldId = base.get(file);
+                String newId = index.get(file);
+                if (!cached && newId != null) {
+                    newId = stage.hashFile(file);
+                }
+                if (Objects.equals(oldId, newId)) {
+                    continue;
+                }
+                Diff.Text a = new Diff.Text(oldId == null
+                        ? new byte[0] : curr.getBlob(oldId).content);
+                Diff.Text b;
+                if (newId == null) {
+                    b = new Diff.Text(new byte[0]);
+                } else if (cached) {
+                    b = new Diff.Text(curr.getBlob(newId).content);
+                } else {
+                    b = new Diff.Text(readWorkingFile(file));
+                }
+                Diff.writeUnified(out, oldId == null ? null : file, newId == null ? null : file,
+                        a, b, Diff.diff(a, b, algorithm));
+            }
+            out.flush();
+        } catch (IOException excp) {
+            throw new GitletException("Cannot write the diff: " + excp.getMessage());
+        }
+        if (stage.isRefreshed()) {
+            stage.save();
+        }
+    }
+
+    /* Returns the contents of the working file FILE. Throws a
+       GitletException if it cannot be read. */
+    private static byte[] readWorkingFile(String file) {
+        try {
+            return Files.readAllBytes(Paths.get(file));
+        } catch (IOException excp) {
+            throw new GitletException("Cannot read " + file + ": " + excp.getMessage());
+        }
+    }
+
 //    public void merge(String branchName) {
 //        File inFile = new File(REPO + "/commitTree");
 //        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
 //        File inFileStage = new File(REPO + "/stagingArea");
 //        StagingArea stage = (StagingArea) FileUtil.deSerialize(inFileStage);
 //
-//        if (!tree.branchPointers.containsKey(branchName)) {
+//        if (!tree.hasBranch(branchName)) {
 //            System.out.println("A branch with that name does not exist.");
 //            System.exit(0);
 //        }
@@ -230,9 +292,9 @@ public class GitLet {
 //            System.out.println("Given branch is an ancestor of the current branch.");
 //            System.exit(0);
 //        }
-//        if (splitPoint.equals(tree.branchPointers.get(tree.currBranch))) {
-//            tree.branchPointers.put(tree.currBranch, tree.branchPointers.get(branchName));
-//            String currPtrId = tree.branchPointers.get(tree.currBranch);
+//        if (splitPoint.equals(tree.getBranch(tree.currBranch))) {
+//            tree.branchPointers.put(tree.currBranch, tree.getBranch(branchName));
+//            String currPtrId = tree.getBranch(tree.currBranch);
 //            tree.currPtr = tree.getCommitNode(currPtrId);
 //            System.out.println("Current branch fast-forwarded.");
 //            File cTree = new File(REPO + "/commitTree");
@@ -240,8 +302,8 @@ public class GitLet {
 //            System.exit(0);
 //        }
 //        CommitNode split = tree.getCommitNode(splitPoint);
-//        CommitNode given = tree.getCommitNode(tree.branchPointers.get(branchName));
-//        CommitNode curr = tree.getCommitNode(tree.branchPointers.get(tree.currBranch));
+//        CommitNode given = tree.getCommitNode(tree.getBranch(branchName));
+//        CommitNode curr = tree.getCommitNode(tree.getBranch(tree.currBranch));
 //        for (String file : split.fileNames.keySet()) {
 //            byte[] splitFile = split.getBlob(split.fileNames.get(file)).content;
 //            if (given.fileNames.containsKey(file) && curr.fileNames.containsKey(file)) {
@@ -296,80 +358,61 @@ public class GitLet {
 //    }
 
     public void merge(String branchName) {
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
-        File inFileStage = new File(REPO + "/stagingArea");
-        StagingArea stage = (StagingArea) FileUtil.deSerialize(inFileStage);
-        if (!tree.branchPointers.containsKey(branchName)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+        CommitTree tree = CommitTree.load();
+        StagingArea stage = StagingArea.load();
+        if (!tree.hasBranch(branchName)) {
+            throw new GitletException("A branch with that name does not exist.");
         }
         if ((stage.getAddedSize() > 0) || (stage.getRemovedSize() > 0)) {
-            System.out.println("You have uncommitted changes");
-            System.exit(0);
+            throw new GitletException("You have uncommitted changes");
         }
         if (tree.currBranch.equals(branchName)) {
-            System.out.println("Cannot merge a branch with itself");
-            System.exit(0);
-        }
-        File pwd = new File(System.getProperty("user.dir"));
-        CommitNode given = tree.getCommitNode(tree.branchPointers.get(branchName));
-        CommitNode curr = tree.getCommitNode(tree.branchPointers.get(tree.currBranch));
-        for (File file : pwd.listFiles()) {
-            if (!tree.currPtr.fileNames.containsKey(file.getName())
-                    && given.fileNames.containsKey(file.getName())) {
-                System.out.println("There is an untracked file in the way;"
+            throw new GitletException("Cannot merge a branch with itself");
+        }
+        CommitNode given = tree.getCommitNode(tree.getBranch(branchName));
+        CommitNode curr = tree.getCommitNode(tree.getBranch(tree.currBranch));
+        for (String file : WorkingTree.snapshot().files()) {
+            if (!curr.fileNames.containsKey(file) && given.fileNames.containsKey(file)) {
+                throw new GitletException("There is an untracked file in the way;"
                         + " delete it or add it first.");
-                System.exit(0);
             }
         }
         String splitPoint = tree.findSplitNode(branchName);
         if (splitPoint == null) {
-            System.out.println("Given branch is an ancestor of the current branch.");
-            System.exit(0);
+            throw new GitletException("Given branch is an ancestor of the current branch.");
         }
-        if (splitPoint.equals(tree.branchPointers.get(tree.currBranch))) {
-            tree.branchPointers.put(tree.currBranch, tree.branchPointers.get(branchName));
-            String currPtrId = tree.branchPointers.get(tree.currBranch);
-            tree.currPtr = tree.getCommitNode(currPtrId);
+        if (splitPoint.equals(tree.getBranch(tree.currBranch))) {
+            tree.setBranch(tree.currBranch, tree.getBranch(branchName));
             System.out.println("Current branch fast-forwarded.");
-            File cTree = new File(REPO + "/commitTree");
-            FileUtil.serialize(cTree, tree);
-            System.exit(0);
+            return;
         }
+        /* a daemon runs many merges in one process */
+        merged = true;
         CommitNode split = tree.getCommitNode(splitPoint);
-        for (String file : split.fileNames.keySet()) {
-            byte[] splitFile = split.getBlob(split.fileNames.get(file)).content;
-            if (given.fileNames.containsKey(file) && curr.fileNames.containsKey(file)) {
-                byte[] currFile = curr.getBlob(curr.fileNames.get(file)).content;
-                byte[] givFile = given.getBlob(given.fileNames.get(file)).content;
-                if (Arrays.equals(currFile, splitFile) && !Arrays.equals(givFile, splitFile)) {
-                    tree.checkoutFile(file, given.commitID);
-                    add(file);
-                } else if (!Arrays.equals(currFile, splitFile) && !Arrays.equals(givFile, splitFile)
-                        && !Arrays.equals(currFile, givFile)) {
-                    mergeHelper(file, currFile, givFile);
-                    merged = false;
-                }
-            } else if (!given.fileNames.containsKey(file) && curr.fileNames.containsKey(file)) {
-                byte[] currFile = curr.getBlob(curr.fileNames.get(file)).content;
-                if (Arrays.equals(currFile, splitFile)) {
-                    rm(file);
-                } else if (!Arrays.equals(currFile, splitFile)) {
-                    mergeHelper(file, currFile, new byte[0]);
-                    merged = false;
-                }
-            } else if (given.fileNames.containsKey(file) && !curr.fileNames.containsKey(file)) {
-                byte[] givFile = given.getBlob(given.fileNames.get(file)).content;
-                if (!Arrays.equals(givFile, splitFile)) {
-                    mergeHelper(file, new byte[0], givFile);
+        TreeMap<String, MergePlan.Action> plan =
+                MergePlan.plan(split.fileNames, curr.fileNames, given.fileNames);
+        for (Map.Entry<String, MergePlan.Action> entry : plan.entrySet()) {
+            String file = entry.getKey();
+            switch (entry.getValue()) {
+                case TAKE_GIVEN:
+                    takeGiven(file, given, stage);
+                    break;
+                case REMOVE:
+                    stage.rm(file);
+                    break;
+                case MERGE:
+                    mergeFile(file, contents(split, file), contents(curr, file),
+                            contents(given, file), stage);
+                    break;
+                default:
+                    mergeHelper(file, contents(curr, file), contents(given, file));
                     merged = false;
-                }
+                    break;
             }
         }
-        mergeExtension(split, curr, given);
+        stage.save();
         if (merged) {
-            commit("Merged " + tree.currBranch + " with " + branchName + ".");
+            commit("Merged " + tree.currBranch + " with " + branchName + ".", given.commitID);
         } else {
             System.out.println("Encountered a merge conflict.");
         }
@@ -384,98 +427,144 @@ public class GitLet {
             Files.write(Paths.get(filename), givContent, StandardOpenOption.APPEND);
             Files.write(Paths.get(filename),
                     (">>>>>>>" + System.lineSeparator()).getBytes(), StandardOpenOption.APPEND);
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (IOException excp) {
+            throw new GitletException("Cannot write " + filename + ": " + excp.getMessage());
         }
     }
 
-    private void mergeExtension(CommitNode split,
-                                CommitNode curr, CommitNode given) {
-        for (String gfile : given.fileNames.keySet()) {
-            CommitTree tree = (CommitTree) FileUtil.deSerialize(
-                    new File(REPO + "/commitTree"));
-            byte[] givFile = given.getBlob(given.fileNames.get(gfile)).content;
-            if (!split.fileNames.containsKey(gfile) && !curr.fileNames.containsKey(gfile)) {
-                tree.checkoutFile(gfile, given.commitID);
-                add(gfile);
-            } else if (!split.fileNames.containsKey(gfile)) {
-                byte[] currFile = curr.getBlob(curr.fileNames.get(gfile)).content;
-                //if (!currFile.equals(givFile)) {
-                if (!Arrays.equals(currFile, givFile)) {
-                    mergeHelper(gfile, currFile, givFile);
-                    merged = false;
-                }
-            }
+    /* Merges the changes both branches made to FILE since SPLITFILE hunk
+       by hunk (see Merge3). The result is written to the working file and,
+       if no hunk conflicts, staged. */
+    private static void mergeFile(String file, byte[] splitFile, byte[] currFile,
+                                  byte[] givFile, StagingArea stage) {
+        Merge3 result = Merge3.merge(splitFile, currFile, givFile,
+                Config.getConfig().diffAlgorithm());
+        try {
+            Files.write(Paths.get(file), result.content);
+        } catch (IOException excp) {
+            throw new GitletException("Cannot write " + file + ": " + excp.getMessage());
+        }
+        WorkingTree.written(file);
+        if (result.conflicts > 0) {
+            merged = false;
+            return;
         }
+        String fileId = Utils.sha1(result.content);
+        CommitNode.saveBlob(fileId, result.content);
+        stage.stageWritten(file, fileId);
     }
 
+    /* Writes the version of FILE in GIVEN to the working directory and
+       stages it */
+    private static void takeGiven(String file, CommitNode given, StagingArea stage) {
+        String fileId = given.fileNames.get(file);
+        given.writeBlob(fileId, new File(file));
+        WorkingTree.written(file);
+        stage.stageWritten(file, fileId);
+    }
 
+    /* Returns the contents of FILE in COMMIT, or none if it does not have it */
+    private static byte[] contents(CommitNode commit, String file) {
+        String fileId = commit.fileNames.get(file);
+        return fileId == null ? new byte[0] : commit.getBlob(fileId).content;
+    }
 
-    public void add(String fileName) {
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
-        CommitNode curr = tree.currPtr;
-        File inFile2 = new File(REPO + "/stagingArea");
-        StagingArea stage = (StagingArea) FileUtil.deSerialize(inFile2);
-        if (!checkInWorkingDir(fileName)) {
-            System.out.println("File does not exist");
-            System.exit(0);
-        } else if (curr.fileNames.containsKey(fileName)) {
-            String newHash = Utils.sha1(Utils.readContents(new File(fileName)));
-            String currHash = Utils.sha1(curr.getBlob(curr.fileNames.get(fileName)).content);
-            if (newHash.equals(currHash)) {
-                if (stage.getRemovedFiles().contains(fileName)) {
-                    stage.getRemovedFiles().remove(fileName);
-                }
-                File sArea = new File(REPO + "/stagingArea");
-                FileUtil.serialize(sArea, stage);
-                System.exit(0);
+
+
+    /* Stages the files named by OPERANDS: file names, directories (all the
+       files under them) or glob patterns matched against paths relative to
+       the working directory. The stage is written once, at the end. */
+    public void add(String... operands) {
+        StagingArea stage = StagingArea.load();
+        TreeSet<String> fileNames = new TreeSet<>();
+        for (String operand : operands) {
+            List<String> matched = matchWorkingFiles(operand);
+            if (matched.isEmpty()) {
+                throw new GitletException("File does not exist");
             }
+            fileNames.addAll(matched);
         }
-        stage.addFile(fileName);
-        File sArea = new File(REPO + "/stagingArea");
-        FileUtil.serialize(sArea, stage);
-        File cTree = new File(REPO + "/commitTree");
-        FileUtil.serialize(cTree, tree);
+        /* a file identical to its committed version is unstaged instead */
+        stage.addFiles(fileNames);
+        stage.save();
     }
 
-    private boolean checkInWorkingDir(String fileName) {
-        File folder = new File(WORKING_DIR);
-        File[] files = folder.listFiles();
-        for (File file : files) {
-            if (file.isFile() && file.getName().equals(fileName)) {
-                return true;
+    /* Returns the working files OPERAND names, as a file, a directory or a
+       glob pattern */
+    private List<String> matchWorkingFiles(String operand) {
+        WorkingTree tree = WorkingTree.snapshot();
+        String path = operand.replace(File.separatorChar, '/');
+        while (path.endsWith("/") && path.length() > 1) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.startsWith("./")) {
+            path = path.substring(2);
+        }
+        List<String> result = new ArrayList<>();
+        if (checkInWorkingDir(path)) {
+            result.add(path);
+        } else if (path.equals(".")) {
+            result.addAll(tree.files());
+        } else if (path.matches(".*[*?\\[{].*")) {
+            PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + path);
+            for (String file : tree.files()) {
+                if (glob.matches(Paths.get(file))) {
+                    result.add(file);
+                }
             }
+        } else {
+            String dir = path + "/";
+            result.addAll(tree.files().subSet(dir, dir + Character.MAX_VALUE));
         }
-        return false;
+        return result;
+    }
+
+    private boolean checkInWorkingDir(String fileName) {
+        return WorkingTree.snapshot().contains(fileName);
     }
 
     public void rm(String fileName) {
-        File inFile = new File(REPO + "/stagingArea");
-        StagingArea stage = (StagingArea) FileUtil.deSerialize(inFile);
+        StagingArea stage = StagingArea.load();
         stage.rm(fileName);
-        File sArea = new File(REPO + "/stagingArea");
-        FileUtil.serialize(sArea, stage);
+        stage.save();
+    }
+
+    /* Moves all loose objects into a single packfile. */
+    public void pack() {
+        getObjectStore();
+        int count = objectStore.pack();
+        System.out.println("Packed " + count + " objects.");
+    }
+
+    /* Converts a repository written with Java serialization to the current format. */
+    public void migrate() {
+        int count = LegacyFormat.migrate();
+        System.out.println("Migrated " + count + " objects.");
+    }
+
+    /* Prints the value of KEY, or sets it to VALUE if one is given. */
+    public void config(String key, String value) {
+        Config config = Config.getConfig();
+        if (value == null) {
+            String current = config.get(key);
+            if (current != null) {
+                System.out.println(current);
+            }
+        } else {
+            config.set(key, value);
+        }
     }
 
     public void rmBranch(String branchName) {
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
+        CommitTree tree = CommitTree.load();
 
         tree.rmBranch(branchName);
-
-        File cTree = new File(REPO + "/commitTree");
-        FileUtil.serialize(cTree, tree);
     }
 
     public void branch(String branchName) {
-        File inFile = new File(REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(inFile);
+        CommitTree tree = CommitTree.load();
 
         tree.addBranch(branchName);
-
-        File cTree = new File(REPO + "/commitTree");
-        FileUtil.serialize(cTree, tree);
     }
 
     public static void main(String[] args) {
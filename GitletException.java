@@ -0,0 +1,16 @@
+package gitlet;
+
+/**
+ * Content: Ends a command that cannot go on, e.g. for a branch that does
+ *          not exist. The message is what the user is told. Main prints it
+ *          and exits; the Daemon prints it to the client that sent the
+ *          command and keeps serving.
+ */
+
+class GitletException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    GitletException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,233 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content: Reads repositories written in older formats and converts them
+ *          in place (the 'migrate' command): objects and state written
+ *          with Java serialization, before ObjectCodec existed, and the
+ *          single commitTree file used before HEAD, refs and the
+ *          CommitLog. The old classes are read into the mirror classes
+ *          below, which copy their field layouts, so the live classes no
+ *          longer need to be Serializable or keep a serialVersionUID.
+ */
+
+/* The mirrors need no serialVersionUID: old streams are read with the
+   mirrors' own class descriptors (see readClassDescriptor) */
+@SuppressWarnings("serial")
+class LegacyFormat {
+    private static final byte[] STREAM_MAGIC = {(byte) 0xac, (byte) 0xed};
+
+    /* Mirrors of the old CommitNode: with and without its DataPool field */
+    static class OldCommitWithPool implements Serializable {
+        String parentName;
+        String commitID;
+        String message;
+        String timeStamp;
+        Object blobs;
+        HashMap<String, String> fileNames;
+    }
+
+    static class OldCommit implements Serializable {
+        String parentName;
+        String commitID;
+        String message;
+        String timeStamp;
+        HashMap<String, String> fileNames;
+    }
+
+    static class OldBlob implements Serializable {
+        String filename;
+        String commitId;
+        byte[] content;
+    }
+
+    static class OldCommitTree implements Serializable {
+        Object currPtr;
+        String currBranch;
+        HashMap<String, String> branchPointers;
+        ArrayList<String> nodeIds;
+    }
+
+    static class OldStagingArea implements Serializable {
+        HashSet<String> removedFiles;
+        HashMap<String, OldBlob> stagedBlobs;
+    }
+
+    static class OldDataPool implements Serializable {
+        HashMap<String, File> blobs;
+    }
+
+    /* Maps the name of each old class to the mirrors that may match it */
+    private static final Map<String, List<Class<?>>> MIRRORS = new HashMap<>();
+
+    static {
+        MIRRORS.put("gitlet.CommitNode", List.of(OldCommitWithPool.class, OldCommit.class));
+        MIRRORS.put("gitlet.CommitNode$Blob", List.of(OldBlob.class));
+        MIRRORS.put("gitlet.CommitTree", List.of(OldCommitTree.class));
+        MIRRORS.put("gitlet.StagingArea", List.of(OldStagingArea.class));
+        MIRRORS.put("gitlet.DataPool", List.of(OldDataPool.class));
+    }
+
+    /* An ObjectInputStream that swaps each old gitlet class for the mirror
+       with the same fields */
+    private static class MirrorInputStream extends ObjectInputStream {
+        MirrorInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+                throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            for (Class<?> mirror : MIRRORS.getOrDefault(desc.getName(), List.of())) {
+                ObjectStreamClass local = ObjectStreamClass.lookup(mirror);
+                if (sameFields(desc, local)) {
+                    return local;
+                }
+            }
+            return desc;
+        }
+    }
+
+    private static boolean sameFields(ObjectStreamClass a, ObjectStreamClass b) {
+        ObjectStreamField[] x = a.getFields();
+        ObjectStreamField[] y = b.getFields();
+        if (x.length != y.length) {
+            return false;
+        }
+        for (int i = 0; i < x.length; ++i) {
+            if (!x[i].getName().equals(y[i].getName())
+                    || x[i].getTypeCode() != y[i].getTypeCode()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Returns true if BYTES were written by Java serialization */
+    static boolean isLegacy(byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == STREAM_MAGIC[0] && bytes[1] == STREAM_MAGIC[1];
+    }
+
+    /* Returns the mirror object serialized in BYTES */
+    private static Object read(byte[] bytes) {
+        try (ObjectInputStream in = new MirrorInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException excp) {
+            throw new IllegalArgumentException("cannot read old object: " + excp.getMessage());
+        }
+    }
+
+    /* Returns the ObjectCodec encoding of the commit or blob object ID stored
+       as BYTES, or BYTES itself if it is already encoded */
+    static byte[] convertObject(String id, byte[] bytes) {
+        if (!isLegacy(bytes)) {
+            return bytes;
+        }
+        Object old = read(bytes);
+        if (old instanceof OldBlob) {
+            OldBlob blob = (OldBlob) old;
+            BlobIndex blobs = BlobIndex.getIndex();
+            if (!blobs.containsKey(id)) {
+                blobs.put(id, blob.content.length);
+            }
+            return ObjectCodec.encode(new CommitNode.Blob(blob.filename, blob.content));
+        }
+        if (old instanceof OldCommitWithPool) {
+            OldCommitWithPool c = (OldCommitWithPool) old;
+            return ObjectCodec.encode(toCommit(c.parentName, c.commitID, c.message,
+                    c.timeStamp, c.fileNames));
+        }
+        if (old instanceof OldCommit) {
+            OldCommit c = (OldCommit) old;
+            return ObjectCodec.encode(toCommit(c.parentName, c.commitID, c.message,
+                    c.timeStamp, c.fileNames));
+        }
+        throw new IllegalArgumentException("unexpected object " + id);
+    }
+
+    private static CommitNode toCommit(String parentName, String commitID, String message,
+                                       String timeStamp, HashMap<String, String> fileNames) {
+        CommitNode node = new CommitNode();
+        node.parentName = parentName;
+        node.commitID = commitID;
+        node.message = message;
+        node.timeStamp = timeStamp;
+        node.fileNames.putAll(fileNames);
+        return node;
+    }
+
+    /* Converts the repository in the current directory to the ObjectCodec
+       format. Returns the number of objects converted. Objects already in
+       the new format are left alone, so running it twice is harmless. */
+    static int migrate() {
+        File objectDir = new File(GitLet.REPO + "/objects");
+        new File(objectDir, "dataPool").delete();
+        /* objects written before the fan-out directories existed; each
+           flat file is only removed once its copy reads back intact */
+        LooseObjectStore loose = new LooseObjectStore(objectDir);
+        for (String name : Utils.plainFilenamesIn(objectDir)) {
+            if (name.length() == 2 * SortedIdFile.ID_LENGTH) {
+                File flat = new File(objectDir, name);
+                byte[] bytes = Utils.readContents(flat);
+                loose.write(name, bytes);
+                if (!Arrays.equals(loose.read(name), bytes)) {
+                    throw new IllegalArgumentException("could not move object " + name);
+                }
+                flat.delete();
+            }
+        }
+
+        int[] converted = {0};
+        PackedObjectStore store = (PackedObjectStore) GitLet.getObjectStore();
+        store.rewriteAll((id, bytes) -> {
+            byte[] result = convertObject(id, bytes);
+            if (result != bytes) {
+                converted[0]++;
+            }
+            return result;
+        });
+
+        File treeFile = new File(GitLet.REPO + "/commitTree");
+        if (treeFile.isFile()) {
+            byte[] treeBytes = Utils.readContents(treeFile);
+            if (isLegacy(treeBytes)) {
+                OldCommitTree old = (OldCommitTree) read(treeBytes);
+                CommitTree.restore(old.currBranch, old.branchPointers, old.nodeIds);
+            } else {
+                ObjectCodec.TreeRecord old = (ObjectCodec.TreeRecord) ObjectCodec.decode(treeBytes);
+                CommitTree.restore(old.currBranch, old.branchPointers, old.nodeIds);
+            }
+            treeFile.delete();
+            converted[0]++;
+        }
+
+        File stageFile = new File(GitLet.REPO + "/stagingArea");
+        byte[] stageBytes = Utils.readContents(stageFile);
+        if (isLegacy(stageBytes)) {
+            OldStagingArea old = (OldStagingArea) read(stageBytes);
+            StagingArea stage = new StagingArea();
+            stage.getRemovedFiles().addAll(old.removedFiles);
+            for (Map.Entry<String, OldBlob> staged : old.stagedBlobs.entrySet()) {
+                stage.stageContents(staged.getKey(), staged.getValue().content);
+            }
+            FileUtil.serialize(stageFile, stage);
+            converted[0]++;
+        }
+        return converted[0];
+    }
+}
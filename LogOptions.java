@@ -0,0 +1,78 @@
+package gitlet;
+
+/**
+ * Content: Limits on what log and global-log print, from their options:
+ *
+ *              -n <count>       print at most count commits
+ *              --since <date>   only commits made at or after date
+ *              --until <date>   only commits made at or before date
+ *
+ *          Dates are "yyyy-MM-dd HH:mm:ss" or just "yyyy-MM-dd"; a bare
+ *          --until date covers that whole day. Times are compared in
+ *          seconds since the epoch, as the commit-graph stores them.
+ */
+
+class LogOptions {
+    private static final long DAY = 24 * 60 * 60;
+
+    int limit = Integer.MAX_VALUE;
+    long since = Long.MIN_VALUE;
+    long until = Long.MAX_VALUE;
+
+    /* Parses ARGS, the operands of log or global-log. Throws a
+       GitletException, "Incorrect operands.", if they do not parse. */
+    static LogOptions parse(String[] args) {
+        LogOptions options = new LogOptions();
+        if (args.length % 2 != 0) {
+            incorrect();
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "-n":
+                    try {
+                        options.limit = Integer.parseInt(value);
+                    } catch (NumberFormatException excp) {
+                        incorrect();
+                    }
+                    if (options.limit < 0) {
+                        incorrect();
+                    }
+                    break;
+                case "--since":
+                    options.since = parseTime(value, false);
+                    break;
+                case "--until":
+                    options.until = parseTime(value, true);
+                    break;
+                default:
+                    incorrect();
+            }
+        }
+        return options;
+    }
+
+    /* Returns the time VALUE stands for; a bare date stands for its first
+       second, or its last one if ENDOFDAY */
+    private static long parseTime(String value, boolean endOfDay) {
+        try {
+            if (value.length() == "yyyy-MM-dd".length()) {
+                long start = CommitNode.parseDate(value + " 00:00:00");
+                return endOfDay ? start + DAY - 1 : start;
+            }
+            return CommitNode.parseDate(value);
+        } catch (IllegalArgumentException excp) {
+            incorrect();
+            return 0;
+        }
+    }
+
+    private static void incorrect() {
+        throw new GitletException("Incorrect operands.");
+    }
+
+    /* Returns true if a commit made at TIME is to be printed */
+    boolean includes(long time) {
+        return time >= since && time <= until;
+    }
+}
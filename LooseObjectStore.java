@@ -0,0 +1,183 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content: The default ObjectStore. Each object is its own file, fanned
+ *          out by the first two characters of its ID, so object
+ *          ab12...ef lives at objects/ab/12...ef. This keeps every
+ *          directory small even with hundreds of thousands of objects.
+ */
+
+public class LooseObjectStore implements ObjectStore {
+    private final File root;
+
+    public LooseObjectStore(File root) {
+        this.root = root;
+    }
+
+    /* Returns the file object ID lives in */
+    File fileFor(String id) {
+        return new File(new File(root, id.substring(0, 2)), id.substring(2));
+    }
+
+    @Override
+    public boolean has(String id) {
+        return fileFor(id).isFile();
+    }
+
+    @Override
+    public byte[] read(String id) {
+        File inFile = fileFor(id);
+        if (!inFile.isFile()) {
+            throw new IllegalArgumentException("no object " + id);
+        }
+        return Utils.readContents(inFile);
+    }
+
+    @Override
+    public void write(String id, byte[] data) {
+        File outFile = fileFor(id);
+        if (outFile.isFile()) {
+            return;
+        }
+        install(outFile, data);
+    }
+
+    /* Replaces the contents of loose object ID with DATA, for format
+       rewrites that store the same object differently. The old contents
+       stay in place until the new ones are complete. */
+    void replace(String id, byte[] data) {
+        install(fileFor(id), data);
+    }
+
+    /* Writes DATA beside OUTFILE and renames it over OUTFILE, so a crash
+       never leaves a truncated or missing object behind */
+    private void install(File outFile, byte[] data) {
+        File dir = outFile.getParentFile();
+        dir.mkdirs();
+        try {
+            File tmp = File.createTempFile("tmp_obj_", null, dir);
+            Utils.writeContents(tmp, data);
+            Files.move(tmp.toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    @Override
+    public InputStream stream(String id) {
+        try {
+            return new BufferedInputStream(new FileInputStream(fileFor(id)));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("no object " + id);
+        }
+    }
+
+    @Override
+    public Output create() {
+        root.mkdirs();
+        try {
+            return new TempOutput(File.createTempFile("tmp_obj_", null, root));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* A new object, written to a temporary file that is renamed into
+       place once its ID is known */
+    private class TempOutput extends Output {
+        private final File tmp;
+        private final OutputStream out;
+        private boolean committed;
+        private boolean closed;
+
+        TempOutput(File tmp) throws IOException {
+            this.tmp = tmp;
+            out = new BufferedOutputStream(new FileOutputStream(tmp));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void commit(String id) {
+            File outFile = fileFor(id);
+            committed = true;
+            try {
+                close();
+                if (outFile.isFile()) {
+                    tmp.delete();
+                    return;
+                }
+                outFile.getParentFile().mkdirs();
+                Files.move(tmp.toPath(), outFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+                if (!committed) {
+                    tmp.delete();
+                }
+            }
+        }
+    }
+
+    /* Returns the IDs of all the loose objects */
+    List<String> ids() {
+        List<String> ids = new ArrayList<>();
+        File[] dirs = root.listFiles(dir -> dir.isDirectory() && dir.getName().length() == 2);
+        if (dirs == null) {
+            return ids;
+        }
+        for (File dir : dirs) {
+            for (String name : Utils.plainFilenamesIn(dir)) {
+                if (!name.startsWith("tmp_obj_")) {
+                    ids.add(dir.getName() + name);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /* Returns the number of bytes loose object ID takes on disk */
+    long sizeOf(String id) {
+        return fileFor(id).length();
+    }
+
+    /* Removes loose object ID, once it is safely stored elsewhere */
+    void delete(String id) {
+        File file = fileFor(id);
+        file.delete();
+        File dir = file.getParentFile();
+        String[] rest = dir.list();
+        if (rest != null && rest.length == 0) {
+            dir.delete();
+        }
+    }
+}
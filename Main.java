@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.File;
+import java.util.Arrays;
 
 /* Driver class for Gitlet, the tiny stupid version-control system.
    @author Brian Qi, Marco Lyu, Michael Huang, David Yi
@@ -13,16 +14,14 @@ public class Main {
     private static void checkInit(boolean init) {
         File g = new File(".gitlet");
         if (!g.exists()) {
-            System.out.println("Not in an initialized gitlet directory.");
-            System.exit(0);
+            throw new GitletException("Not in an initialized gitlet directory.");
         }
     }
 
     private static void checkArgs(String[] args, int correctArgs) {
         if ((args.length != correctArgs + 1)
                 || (args.length > 1 && !(args[1] instanceof String))) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw new GitletException("Incorrect operands.");
         }
     }
 
@@ -32,15 +31,44 @@ public class Main {
                 || (args.length == 3 && (!args[1].equals("--") || !(args[2] instanceof String)))
                 || (args.length == 4 && (!(args[1] instanceof String)
                 || !args[2].equals("--") || !(args[3] instanceof String)))) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw new GitletException("Incorrect operands.");
         }
     }
 
     public static void main(String... args) {
+        if (args.length > 0 && !(args.length == 1 && args[0].equals("daemon"))) {
+            int status = Daemon.forward(args);
+            if (status >= 0) {
+                System.exit(status);
+            }
+        }
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+            System.exit(0);
+        }
+    }
+
+    /* Runs the command ARGS in this process; used by main, and by the
+       Daemon for the commands it is sent */
+    static void run(String... args) {
         if (args.length == 0) {
-            System.out.println("Please enter a command.");
+            throw new GitletException("Please enter a command.");
         }
+        RepositorySession session = RepositorySession.open();
+        try {
+            dispatch(args);
+            session.save();
+        } finally {
+            session.close();
+        }
+        if (ObjectCache.used() && Boolean.parseBoolean(Config.getConfig().get(Config.TIMINGS))) {
+            System.err.println(ObjectCache.getCache().stats());
+        }
+    }
+
+    private static void dispatch(String... args) {
         boolean init = false;
 
         GitLet gitLit = new GitLet();
@@ -50,9 +78,11 @@ public class Main {
                 gitLit.init();
                 break;
             case "add":
-                checkArgs(args, 1);
+                if (args.length < 2) {
+                    throw new GitletException("Incorrect operands.");
+                }
                 checkInit(init);
-                gitLit.add(args[1]);
+                gitLit.add(Arrays.copyOfRange(args, 1, args.length));
                 break;
             case "commit":
                 checkArgs(args, 1);
@@ -65,20 +95,27 @@ public class Main {
                 gitLit.rm(args[1]);
                 break;
             case "log":
-                checkArgs(args, 0);
                 checkInit(init);
-                gitLit.log();
+                gitLit.log(Arrays.copyOfRange(args, 1, args.length));
                 break;
             case "global-log":
-                checkArgs(args, 0);
                 checkInit(init);
-                gitLit.globalLog();
+                gitLit.globalLog(Arrays.copyOfRange(args, 1, args.length));
                 break;
             case "find":
+                if (args.length == 3 && (args[1].equals("-w") || args[1].equals("-s"))) {
+                    checkInit(init);
+                    gitLit.find(args[1], args[2]);
+                    break;
+                }
                 checkArgs(args, 1);
                 checkInit(init);
                 gitLit.find(args[1]);
                 break;
+            case "diff":
+                checkInit(init);
+                gitLit.diff(Arrays.copyOfRange(args, 1, args.length));
+                break;
             case "status":
                 checkArgs(args, 0);
                 checkInit(init);
@@ -104,14 +141,45 @@ public class Main {
                 checkInit(init);
                 gitLit.reset(args[1]);
                 break;
+            case "pack":
+                checkArgs(args, 0);
+                checkInit(init);
+                gitLit.pack();
+                break;
+            case "migrate":
+                checkArgs(args, 0);
+                checkInit(init);
+                gitLit.migrate();
+                break;
+            case "config":
+                if (args.length != 2 && args.length != 3) {
+                    throw new GitletException("Incorrect operands.");
+                }
+                checkInit(init);
+                gitLit.config(args[1], args.length == 3 ? args[2] : null);
+                break;
             case "merge":
                 checkArgs(args, 1);
                 checkInit(init);
                 gitLit.merge(args[1]);
                 break;
+            case "batch":
+                checkInit(init);
+                if (args.length > 2) {
+                    throw new GitletException("Incorrect operands.");
+                }
+                Batch.run(args.length == 2 ? args[1] : null);
+                break;
+            case "daemon":
+                checkInit(init);
+                if (args.length == 2 && args[1].equals("stop")) {
+                    throw new GitletException("No daemon is running.");
+                }
+                checkArgs(args, 0);
+                Daemon.serve();
+                break;
             default:
-                System.out.println("No command with that name exists.");
-                System.exit(0);
+                throw new GitletException("No command with that name exists.");
         }
     }
 }
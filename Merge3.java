@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Content: Three-way merge of two versions of a file that share a base
+ *          version. Each version is diffed against the base. Changes to
+ *          regions of the base that only one side touched are taken as
+ *          they are; a region both sides changed is taken once if they
+ *          changed it the same way, and is otherwise a conflict, written
+ *          between the same markers merge has always used:
+ *
+ *              <<<<<<< HEAD
+ *              (the current branch's lines)
+ *              =======
+ *              (the given branch's lines)
+ *              >>>>>>>
+ *
+ *          Changes that overlap or touch count as the same region, so
+ *          edits to adjacent lines are a conflict, as they are in git.
+ */
+
+class Merge3 {
+    /* content: the merged file; conflicts: the number of conflicted regions */
+    final byte[] content;
+    final int conflicts;
+
+    private Merge3(byte[] content, int conflicts) {
+        this.content = content;
+        this.conflicts = conflicts;
+    }
+
+    /* Merges OURS and THEIRS, both derived from BASE */
+    static Merge3 merge(byte[] base, byte[] ours, byte[] theirs, Diff.Algorithm algorithm) {
+        Diff.Text o = new Diff.Text(base);
+        Diff.Text a = new Diff.Text(ours);
+        Diff.Text b = new Diff.Text(theirs);
+        Diff.Interner interner = new Diff.Interner();
+        int[] oIds = interner.ids(o);
+        int[] aIds = interner.ids(a);
+        int[] bIds = interner.ids(b);
+        List<Diff.Edit> ea = Diff.diff(oIds, aIds, algorithm);
+        List<Diff.Edit> eb = Diff.diff(oIds, bIds, algorithm);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(ours.length, theirs.length));
+        int conflicts = 0;
+        int copied = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ea.size() || j < eb.size()) {
+            /* the region starts with whichever change comes first, and grows
+               while a change of either side overlaps or touches it */
+            int start;
+            int end;
+            if (j == eb.size() || (i < ea.size() && ea.get(i).aStart <= eb.get(j).aStart)) {
+                start = ea.get(i).aStart;
+                end = ea.get(i).aEnd;
+            } else {
+                start = eb.get(j).aStart;
+                end = eb.get(j).aEnd;
+            }
+            int iFirst = i;
+            int jFirst = j;
+            while (true) {
+                if (i < ea.size() && ea.get(i).aStart <= end) {
+                    end = Math.max(end, ea.get(i).aEnd);
+                    i++;
+                } else if (j < eb.size() && eb.get(j).aStart <= end) {
+                    end = Math.max(end, eb.get(j).aEnd);
+                    j++;
+                } else {
+                    break;
+                }
+            }
+            copy(out, o, copied, start);
+            copied = end;
+            if (jFirst == j) {
+                copy(out, a, side(ea, iFirst, i, start, true), side(ea, iFirst, i, end, false));
+            } else if (iFirst == i) {
+                copy(out, b, side(eb, jFirst, j, start, true), side(eb, jFirst, j, end, false));
+            } else {
+                int aStart = side(ea, iFirst, i, start, true);
+                int aEnd = side(ea, iFirst, i, end, false);
+                int bStart = side(eb, jFirst, j, start, true);
+                int bEnd = side(eb, jFirst, j, end, false);
+                if (same(aIds, aStart, aEnd, bIds, bStart, bEnd)) {
+                    copy(out, a, aStart, aEnd);
+                } else {
+                    conflicts++;
+                    marker(out, "<<<<<<< HEAD");
+                    copyLines(out, a, aStart, aEnd);
+                    marker(out, "=======");
+                    copyLines(out, b, bStart, bEnd);
+                    marker(out, ">>>>>>>");
+                }
+            }
+        }
+        copy(out, o, copied, o.size());
+        return new Merge3(out.toByteArray(), conflicts);
+    }
+
+    /* Returns the line of one side matching base line POS, at the START or
+       end of a region whose changes on that side are EDITS[FROM, TO) */
+    private static int side(List<Diff.Edit> edits, int from, int to, int pos, boolean start) {
+        if (start) {
+            Diff.Edit first = edits.get(from);
+            return first.bStart - (first.aStart - pos);
+        }
+        Diff.Edit last = edits.get(to - 1);
+        return last.bEnd + (pos - last.aEnd);
+    }
+
+    private static boolean same(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+        if (aEnd - aStart != bEnd - bStart) {
+            return false;
+        }
+        for (int k = 0; k < aEnd - aStart; ++k) {
+            if (a[aStart + k] != b[bStart + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void copy(ByteArrayOutputStream out, Diff.Text text, int from, int to) {
+        for (int k = from; k < to; ++k) {
+            out.writeBytes(text.lines[k].getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /* Copies lines [FROM, TO) of TEXT, ending the last one if it is not, so
+       the marker after it starts a line of its own */
+    private static void copyLines(ByteArrayOutputStream out, Diff.Text text, int from, int to) {
+        copy(out, text, from, to);
+        if (to > from && !text.lines[to - 1].endsWith("\n")) {
+            out.writeBytes(System.lineSeparator().getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static void marker(ByteArrayOutputStream out, String marker) {
+        out.writeBytes((marker + System.lineSeparator()).getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,96 @@
+package gitlet;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/* Tests of Merge3: clean merges take each side's changes, and regions
+   both sides changed differently are written between conflict markers.
+   @author
+ */
+public class Merge3Test {
+    private static final String NL = System.lineSeparator();
+    private static final String BASE = "1\n2\n3\n4\n5\n6\n7\n8\n";
+
+    /* Changes to different regions are both taken */
+    @Test
+    public void cleanTest() {
+        for (Diff.Algorithm algorithm : Diff.Algorithm.values()) {
+            Merge3 m = merge(BASE, "one\n2\n3\n4\n5\n6\n7\n8\n",
+                    "1\n2\n3\n4\n5\n6\n8\neight\n", algorithm);
+            assertEquals(0, m.conflicts);
+            assertEquals("one\n2\n3\n4\n5\n6\n8\neight\n", string(m));
+        }
+    }
+
+    /* A side that changed nothing takes the other side whole */
+    @Test
+    public void oneSideTest() {
+        String ours = "0\n1\n2\n4\n5\nfive\n6\n7\n8\n";
+        assertEquals(ours, string(merge(BASE, ours, BASE, Diff.Algorithm.MYERS)));
+        assertEquals(ours, string(merge(BASE, BASE, ours, Diff.Algorithm.MYERS)));
+    }
+
+    /* A region both sides changed the same way is taken once */
+    @Test
+    public void sameChangeTest() {
+        String both = "1\n2\nthree\n4\n5\n6\n7\n8\n";
+        Merge3 m = merge(BASE, both, "1\n2\nthree\n4\n5\n6\n7\n8\nnine\n", Diff.Algorithm.MYERS);
+        assertEquals(0, m.conflicts);
+        assertEquals("1\n2\nthree\n4\n5\n6\n7\n8\nnine\n", string(m));
+    }
+
+    /* A region both sides changed differently is a conflict; the
+       regions around it are still merged */
+    @Test
+    public void conflictTest() {
+        Merge3 m = merge(BASE, "one\n2\n3\nours\n5\n6\n7\n8\n",
+                "1\n2\n3\ntheirs\n5\n6\n7\n8\neight\n", Diff.Algorithm.MYERS);
+        assertEquals(1, m.conflicts);
+        assertEquals("one\n2\n3\n"
+                + "<<<<<<< HEAD" + NL + "ours\n"
+                + "=======" + NL + "theirs\n"
+                + ">>>>>>>" + NL
+                + "5\n6\n7\n8\neight\n", string(m));
+    }
+
+    /* Changes to adjacent lines touch, so they are one conflicted region */
+    @Test
+    public void adjacentTest() {
+        Merge3 m = merge(BASE, "1\n2\nTHREE\n4\n5\n6\n7\n8\n",
+                "1\n2\n3\nFOUR\n5\n6\n7\n8\n", Diff.Algorithm.MYERS);
+        assertEquals(1, m.conflicts);
+        assertEquals("1\n2\n"
+                + "<<<<<<< HEAD" + NL + "THREE\n4\n"
+                + "=======" + NL + "3\nFOUR\n"
+                + ">>>>>>>" + NL
+                + "5\n6\n7\n8\n", string(m));
+    }
+
+    /* A conflicted side without a final newline still has the marker
+       after it on a line of its own */
+    @Test
+    public void missingNewlineTest() {
+        Merge3 m = merge("a\nb\n", "a\nours", "a\ntheirs", Diff.Algorithm.MYERS);
+        assertEquals(1, m.conflicts);
+        assertEquals("a\n"
+                + "<<<<<<< HEAD" + NL + "ours" + NL
+                + "=======" + NL + "theirs" + NL
+                + ">>>>>>>" + NL, string(m));
+    }
+
+    private static Merge3 merge(String base, String ours, String theirs,
+                                Diff.Algorithm algorithm) {
+        return Merge3.merge(bytes(base), bytes(ours), bytes(theirs), algorithm);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String string(Merge3 m) {
+        return new String(m.content, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,184 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Content: Finds the merge bases of two commits: their common ancestors
+ *          that are not ancestors of another common ancestor.
+ *
+ *          Both tips are walked at once, always expanding the commit with
+ *          the highest generation number next, and each commit is painted
+ *          with the side(s) it was reached from. A commit painted from
+ *          both sides is a common ancestor; everything below it is painted
+ *          STALE, since nothing down there can be a better answer. The walk
+ *          ends as soon as only STALE commits are left to expand, so its
+ *          cost follows how far the two branches have diverged, not the
+ *          length of the history. Merge commits simply have two parents
+ *          to expand; criss-cross histories produce several bases.
+ */
+
+class MergeBase {
+    private static final byte FROM_ONE = 1;
+    private static final byte FROM_TWO = 2;
+    private static final byte STALE = 4;
+    private static final byte RESULT = 8;
+
+    /* The commit history, seen as rows of a commit-graph */
+    interface Graph {
+        int NONE = CommitGraph.NONE;
+
+        int parent(int row);
+
+        int secondParent(int row);
+
+        int generation(int row);
+    }
+
+    private final Graph graph;
+    private final HashMap<Integer, Byte> flags = new HashMap<>();
+    private final PriorityQueue<Integer> queue;
+    /* queued: how many times each row is in the queue; live: how many queue
+       entries are not STALE, so the walk knows when to stop without
+       looking through the queue */
+    private final HashMap<Integer, Integer> queued = new HashMap<>();
+    private int live;
+
+    private MergeBase(Graph graph) {
+        this.graph = graph;
+        queue = new PriorityQueue<>((a, b) -> {
+            int cmp = Integer.compare(graph.generation(b), graph.generation(a));
+            return cmp != 0 ? cmp : Integer.compare(b, a);
+        });
+    }
+
+    /* Returns the merge bases of rows ONE and TWO of GRAPH, best first:
+       highest generation, then newest row. */
+    static List<Integer> find(Graph graph, int one, int two) {
+        List<Integer> result = new ArrayList<>();
+        if (one == two) {
+            result.add(one);
+            return result;
+        }
+        List<Integer> candidates = new MergeBase(graph).paint(one, two);
+        for (int candidate : candidates) {
+            if (!isRedundant(graph, candidate, candidates)) {
+                result.add(candidate);
+            }
+        }
+        result.sort((a, b) -> {
+            int cmp = Integer.compare(graph.generation(b), graph.generation(a));
+            return cmp != 0 ? cmp : Integer.compare(b, a);
+        });
+        return result;
+    }
+
+    /* Returns the best merge base of ONE and TWO, or NONE if they share no history */
+    static int best(Graph graph, int one, int two) {
+        List<Integer> bases = find(graph, one, two);
+        return bases.isEmpty() ? Graph.NONE : bases.get(0);
+    }
+
+    /* Returns true if ANCESTOR can be reached from DESCENDANT */
+    static boolean isAncestor(Graph graph, int ancestor, int descendant) {
+        return best(graph, ancestor, descendant) == ancestor;
+    }
+
+    private byte flagsOf(int row) {
+        return flags.getOrDefault(row, (byte) 0);
+    }
+
+    /* Walks down from ONE and TWO and returns every commit found to be
+       reachable from both before the walk went stale */
+    private List<Integer> paint(int one, int two) {
+        List<Integer> result = new ArrayList<>();
+        mark(one, FROM_ONE);
+        mark(two, FROM_TWO);
+        push(one);
+        push(two);
+        while (live > 0) {
+            int row = pop();
+            byte f = (byte) (flagsOf(row) & (FROM_ONE | FROM_TWO | STALE));
+            /* a STALE commit lies below a common ancestor already found,
+               so it can never be a merge base itself */
+            if (f == (FROM_ONE | FROM_TWO)) {
+                if ((flagsOf(row) & RESULT) == 0) {
+                    mark(row, RESULT);
+                    result.add(row);
+                }
+                f |= STALE;
+            }
+            paintParent(graph.parent(row), f);
+            paintParent(graph.secondParent(row), f);
+        }
+        return result;
+    }
+
+    private void paintParent(int parent, byte f) {
+        if (parent == Graph.NONE || (flagsOf(parent) & f) == f) {
+            return;
+        }
+        mark(parent, f);
+        push(parent);
+    }
+
+    private boolean isStale(int row) {
+        return (flagsOf(row) & STALE) != 0;
+    }
+
+    /* Adds F to the flags of ROW; if that makes it STALE, its entries
+       already in the queue stop counting as live */
+    private void mark(int row, byte f) {
+        boolean wasStale = isStale(row);
+        flags.put(row, (byte) (flagsOf(row) | f));
+        if (!wasStale && isStale(row)) {
+            live -= queued.getOrDefault(row, 0);
+        }
+    }
+
+    private void push(int row) {
+        queue.add(row);
+        queued.merge(row, 1, Integer::sum);
+        if (!isStale(row)) {
+            live++;
+        }
+    }
+
+    private int pop() {
+        int row = queue.poll();
+        queued.merge(row, -1, Integer::sum);
+        if (!isStale(row)) {
+            live--;
+        }
+        return row;
+    }
+
+    /* Returns true if CANDIDATE is an ancestor of one of the other CANDIDATES.
+       Only commits with a generation above CANDIDATE's can reach it, so the
+       walk stops there. */
+    private static boolean isRedundant(Graph graph, int candidate, List<Integer> candidates) {
+        int floor = graph.generation(candidate);
+        List<Integer> stack = new ArrayList<>();
+        HashMap<Integer, Boolean> seen = new HashMap<>();
+        for (int other : candidates) {
+            if (other != candidate) {
+                stack.add(other);
+            }
+        }
+        while (!stack.isEmpty()) {
+            int row = stack.remove(stack.size() - 1);
+            if (row == candidate) {
+                return true;
+            }
+            if (row == Graph.NONE || graph.generation(row) <= floor
+                    || seen.put(row, true) != null) {
+                continue;
+            }
+            stack.add(graph.parent(row));
+            stack.add(graph.secondParent(row));
+        }
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package gitlet;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/* Tests of MergeBase on small histories built in an ArrayGraph.
+   @author
+ */
+public class MergeBaseTest {
+    private static final int NONE = MergeBase.Graph.NONE;
+
+    /* A fork: two branches off the same commit have it as their only base */
+    @Test
+    public void forkTest() {
+        ArrayGraph g = new ArrayGraph(8);
+        int root = g.add(NONE, NONE);
+        int fork = g.add(root, NONE);
+        int a1 = g.add(fork, NONE);
+        int a2 = g.add(a1, NONE);
+        int b1 = g.add(fork, NONE);
+        assertEquals(Arrays.asList(fork), MergeBase.find(g, a2, b1));
+        assertEquals(Arrays.asList(fork), MergeBase.find(g, b1, a2));
+        assertEquals(fork, MergeBase.best(g, a2, b1));
+    }
+
+    /* One commit descending from the other: the ancestor is the base */
+    @Test
+    public void ancestorTest() {
+        ArrayGraph g = new ArrayGraph(4);
+        int root = g.add(NONE, NONE);
+        int c1 = g.add(root, NONE);
+        int c2 = g.add(c1, NONE);
+        assertEquals(Arrays.asList(c1), MergeBase.find(g, c1, c2));
+        assertEquals(Arrays.asList(c2), MergeBase.find(g, c2, c2));
+        assertTrue(MergeBase.isAncestor(g, root, c2));
+        assertTrue(MergeBase.isAncestor(g, c2, c2));
+        assertFalse(MergeBase.isAncestor(g, c2, c1));
+    }
+
+    /* Commits with no shared history have no base */
+    @Test
+    public void unrelatedTest() {
+        ArrayGraph g = new ArrayGraph(4);
+        int r1 = g.add(NONE, NONE);
+        int r2 = g.add(NONE, NONE);
+        int c1 = g.add(r1, NONE);
+        assertTrue(MergeBase.find(g, c1, r2).isEmpty());
+        assertEquals(NONE, MergeBase.best(g, c1, r2));
+        assertFalse(MergeBase.isAncestor(g, r1, r2));
+    }
+
+    /* A criss-cross merge: each branch merged the other's tip, so both
+       tips are bases and neither is redundant */
+    @Test
+    public void crissCrossTest() {
+        ArrayGraph g = new ArrayGraph(8);
+        int root = g.add(NONE, NONE);
+        int a = g.add(root, NONE);
+        int b = g.add(root, NONE);
+        int a2 = g.add(a, b);
+        int b2 = g.add(b, a);
+        int a3 = g.add(a2, NONE);
+        int b3 = g.add(b2, NONE);
+        List<Integer> bases = MergeBase.find(g, a3, b3);
+        assertEquals(2, bases.size());
+        assertTrue(bases.contains(a));
+        assertTrue(bases.contains(b));
+        assertTrue(bases.contains(MergeBase.best(g, a3, b3)));
+    }
+
+    /* A base reachable from another candidate is dropped: after a merge
+       of the side branch, only the side branch's tip is a base */
+    @Test
+    public void redundantTest() {
+        ArrayGraph g = new ArrayGraph(8);
+        int root = g.add(NONE, NONE);
+        int side = g.add(root, NONE);
+        int main1 = g.add(root, NONE);
+        int merged = g.add(main1, side);
+        int main2 = g.add(merged, NONE);
+        int side2 = g.add(side, NONE);
+        assertEquals(Arrays.asList(side), MergeBase.find(g, main2, side2));
+    }
+
+    /* Many branches merged one by one into a line: the base of the last
+       merge and a later commit on the line is the merge itself */
+    @Test
+    public void wideTest() {
+        ArrayGraph g = new ArrayGraph(16);
+        int root = g.add(NONE, NONE);
+        int tip = root;
+        for (int i = 0; i < 200; ++i) {
+            int branch = g.add(root, NONE);
+            tip = g.add(tip, branch);
+        }
+        int next = g.add(tip, NONE);
+        int other = g.add(tip, NONE);
+        assertEquals(Arrays.asList(tip), MergeBase.find(g, next, other));
+    }
+}
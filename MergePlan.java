@@ -0,0 +1,70 @@
+package gitlet;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Content: Decides what a merge does with each file, from the blob IDs
+ *          the split point, the current commit and the given commit
+ *          record for it. Equal IDs mean equal contents, so no blob is
+ *          read to decide; merge only reads the blobs of the files it
+ *          has to merge line by line or mark as conflicted, and copies
+ *          the ones it takes from the given branch straight to the
+ *          working directory.
+ *
+ *          A file changed on one branch only takes that branch's
+ *          version; a file changed the same way on both, or on neither,
+ *          is left alone. Files changed differently on both are MERGE
+ *          if they were in the split point and both kept them, and
+ *          CONFLICT otherwise (changed on one side and deleted on the
+ *          other, or added on both with different contents).
+ */
+
+class MergePlan {
+    enum Action {
+        /* check out and stage the given branch's version */
+        TAKE_GIVEN,
+        /* remove the file, deleted on the given branch */
+        REMOVE,
+        /* merge the two versions hunk by hunk (see Merge3) */
+        MERGE,
+        /* write both whole versions between conflict markers */
+        CONFLICT
+    }
+
+    /* Returns the action for every file that needs one, by file name;
+       SPLIT, CURR and GIVEN map the file names of each commit to their
+       blob IDs */
+    static TreeMap<String, Action> plan(Map<String, String> split, Map<String, String> curr,
+                                        Map<String, String> given) {
+        TreeSet<String> files = new TreeSet<>(split.keySet());
+        files.addAll(curr.keySet());
+        files.addAll(given.keySet());
+        TreeMap<String, Action> actions = new TreeMap<>();
+        for (String file : files) {
+            Action action = action(split.get(file), curr.get(file), given.get(file));
+            if (action != null) {
+                actions.put(file, action);
+            }
+        }
+        return actions;
+    }
+
+    /* Returns the action for a file with blob IDs SPLITID, CURRID and
+       GIVENID (null where a commit does not have it), or null if the
+       current version stays */
+    private static Action action(String splitId, String currId, String givenId) {
+        if (Objects.equals(currId, givenId) || Objects.equals(givenId, splitId)) {
+            return null;
+        }
+        if (Objects.equals(currId, splitId)) {
+            return givenId == null ? Action.REMOVE : Action.TAKE_GIVEN;
+        }
+        if (splitId != null && currId != null && givenId != null) {
+            return Action.MERGE;
+        }
+        return Action.CONFLICT;
+    }
+}
@@ -0,0 +1,261 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Content: An inverted index over commit messages, so find does not have
+ *          to look at every commit. Each posting is a SortedIdFile record
+ *          (.gitlet/message-index) whose 20-byte key is a 16-byte hash
+ *          followed by the commit-graph row it points to, so all the
+ *          postings of one hash sit together, in row order. A commit gets
+ *          one posting for its whole message and one for each distinct
+ *          word in it (runs of letters and digits, lowercased).
+ *
+ *          As with the CommitIndex, the newest commits are not indexed
+ *          yet: the number of rows covered is kept in
+ *          message-index-rows, and the rows after it are read straight
+ *          from the commit-graph. Once there are more than TAIL_LIMIT of
+ *          them, they are indexed in one rewrite. Postings are only
+ *          candidates, since hashes can collide; every hit is checked
+ *          against the message itself.
+ */
+
+class MessageIndex {
+    /* The commit messages being indexed, by commit-graph row */
+    interface Messages {
+        int size();
+
+        String message(int row);
+    }
+
+    private static final int HASH_LENGTH = 16;
+    private static final int TAIL_LIMIT = 512;
+
+    private static MessageIndex index = null;
+    private final SortedIdFile postings;
+    private final File rowsFile;
+    private Messages graph;
+
+    /* An index kept in the index files under REPO */
+    private MessageIndex(File repo) {
+        postings = new SortedIdFile(new File(repo, "message-index"), SortedIdFile.ID_LENGTH);
+        rowsFile = new File(repo, "message-index-rows");
+    }
+
+    /* Returns the message index of the current repository, indexing the
+       commits of GRAPH that have piled up since the last time */
+    static synchronized MessageIndex getIndex(CommitGraph graph) {
+        if (index == null) {
+            index = new MessageIndex(new File(GitLet.REPO));
+        }
+        index.graph = graph;
+        index.update();
+        return index;
+    }
+
+    /* Returns an index over MESSAGES, kept in index files under REPO
+       rather than in the current repository; for timing the index on
+       synthetic histories */
+    static MessageIndex over(Messages messages, File repo) {
+        MessageIndex idx = new MessageIndex(repo);
+        idx.graph = messages;
+        idx.update();
+        return idx;
+    }
+
+    /* Returns the number of commit-graph rows covered by the postings */
+    private int indexedRows() {
+        if (!rowsFile.isFile()) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Utils.readContents(rowsFile)).getInt();
+    }
+
+    /* Indexes the rows that are not covered yet, if there are too many.
+       Should a crash come between the two writes, the rows are simply
+       indexed again: their postings are the same records. */
+    private void update() {
+        int from = indexedRows();
+        if (graph.size() - from <= TAIL_LIMIT) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>();
+        for (int row = from; row < graph.size(); ++row) {
+            for (String key : keys(graph.message(row))) {
+                records.add(posting(key, row));
+            }
+        }
+        postings.insertAll(records);
+        Utils.writeContents(rowsFile, ByteBuffer.allocate(Integer.BYTES)
+                .putInt(graph.size()).array());
+    }
+
+    /* Returns the rows of the commits whose message is exactly MESSAGE */
+    List<Integer> exact(String message) {
+        List<Integer> result = new ArrayList<>();
+        for (int row : candidates(List.of(messageKey(message)))) {
+            if (graph.message(row).equals(message)) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /* Returns the rows of the commits whose message contains every word of
+       WORDS, in any order and case */
+    List<Integer> words(String words) {
+        List<String> tokens = tokens(words);
+        List<Integer> result = new ArrayList<>();
+        if (tokens.isEmpty()) {
+            return result;
+        }
+        List<String> keys = new ArrayList<>();
+        for (String token : tokens) {
+            keys.add(wordKey(token));
+        }
+        for (int row : candidates(keys)) {
+            if (tokens(graph.message(row)).containsAll(tokens)) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /* Returns the rows of the commits whose message contains TEXT. The
+       words of TEXT that cannot be the tail or head of a longer word must
+       be words of the message, which narrows the search; if TEXT has no
+       such word, every message is read from the commit-graph instead. */
+    List<Integer> substring(String text) {
+        List<String> whole = wholeWords(text);
+        List<Integer> result = new ArrayList<>();
+        if (whole.isEmpty()) {
+            for (int row = 0; row < graph.size(); ++row) {
+                if (graph.message(row).contains(text)) {
+                    result.add(row);
+                }
+            }
+            return result;
+        }
+        List<String> keys = new ArrayList<>();
+        for (String token : whole) {
+            keys.add(wordKey(token));
+        }
+        for (int row : candidates(keys)) {
+            if (graph.message(row).contains(text)) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /* Returns, in order, the rows that have a posting under every one of
+       KEYS, plus every row that is not indexed yet */
+    private TreeSet<Integer> candidates(List<String> keys) {
+        TreeSet<Integer> rows = intersect(keys);
+        for (int row = indexedRows(); row < graph.size(); ++row) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /* Returns, in order, the rows that have a posting under every one of
+       KEYS. Only the shortest posting list is read; the others are probed
+       for each of its rows. */
+    private TreeSet<Integer> intersect(List<String> keys) {
+        String shortest = keys.get(0);
+        int shortestLength = Integer.MAX_VALUE;
+        for (String key : keys) {
+            int[] range = range(key);
+            if (range[1] - range[0] < shortestLength) {
+                shortest = key;
+                shortestLength = range[1] - range[0];
+            }
+        }
+        TreeSet<Integer> rows = lookup(shortest);
+        for (String key : keys) {
+            if (!key.equals(shortest)) {
+                byte[] probe = posting(key, 0);
+                rows.removeIf(row -> !postings.contains(withRow(probe, row)));
+            }
+        }
+        return rows;
+    }
+
+    /* Returns the rows posted under KEY */
+    private TreeSet<Integer> lookup(String key) {
+        TreeSet<Integer> rows = new TreeSet<>();
+        int[] range = range(key);
+        for (int i = range[0]; i < range[1]; ++i) {
+            rows.add(ByteBuffer.wrap(postings.id(i)).getInt(HASH_LENGTH));
+        }
+        return rows;
+    }
+
+    /* Returns the first and one past the last index of the postings of KEY */
+    private int[] range(String key) {
+        int from = postings.find(posting(key, 0));
+        int to = postings.find(posting(key, -1));
+        return new int[] {from < 0 ? -from - 1 : from, -to - 1};
+    }
+
+    private static byte[] posting(String key, int row) {
+        byte[] hash = Utils.hexToBytes(Utils.sha1(key));
+        return ByteBuffer.allocate(SortedIdFile.ID_LENGTH)
+                .put(hash, 0, HASH_LENGTH).putInt(row).array();
+    }
+
+    /* Returns POSTING with its row set to ROW */
+    private static byte[] withRow(byte[] posting, int row) {
+        ByteBuffer.wrap(posting).putInt(HASH_LENGTH, row);
+        return posting;
+    }
+
+    private static String messageKey(String message) {
+        return "message\0" + message;
+    }
+
+    private static String wordKey(String word) {
+        return "word\0" + word;
+    }
+
+    /* Returns the keys MESSAGE is posted under */
+    private static Set<String> keys(String message) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(messageKey(message));
+        for (String token : tokens(message)) {
+            keys.add(wordKey(token));
+        }
+        return keys;
+    }
+
+    /* Returns the distinct words of TEXT, lowercased */
+    static List<String> tokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /* Returns the words of TEXT that are whole words in any message
+       containing TEXT: those not touching either end of TEXT */
+    private static List<String> wholeWords(String text) {
+        String[] parts = text.split("[^\\p{L}\\p{N}]+", -1);
+        if (parts.length <= 2) {
+            return new ArrayList<>();
+        }
+        List<String> inner = new ArrayList<>(Arrays.asList(parts).subList(1, parts.length - 1));
+        inner.removeIf(String::isEmpty);
+        return tokens(String.join(" ", inner));
+    }
+}
@@ -0,0 +1,104 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Content: Keeps recently read commits and blobs in memory, so a command
+ *          that looks at the same objects again (merge, the split-point
+ *          search) reads and decodes each of them only once. Objects are
+ *          named by their contents and never change, so an entry is never
+ *          stale; it only has to make room for newer ones.
+ *
+ *          The cache holds at most core.objectCacheSize bytes (64 MB by
+ *          default; 0 turns it off), counting each object at the size of
+ *          its contents. The least recently used entries are evicted
+ *          first. Objects larger than the whole budget are not kept.
+ *
+ *          Cached objects are shared: callers must not change them.
+ */
+
+class ObjectCache {
+    private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private static ObjectCache cache = null;
+    private final long budget;
+    private long used;
+    private long hits;
+    private long misses;
+    private long evictions;
+    /* entries: object ID -> (object, size), least recently used first */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static class Entry {
+        final Object value;
+        final long size;
+
+        Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private ObjectCache(long budget) {
+        this.budget = budget;
+    }
+
+    /* Returns the cache of the current process */
+    static synchronized ObjectCache getCache() {
+        if (cache == null) {
+            cache = new ObjectCache(Config.getConfig().objectCacheSize(DEFAULT_BUDGET));
+        }
+        return cache;
+    }
+
+    /* Returns the object cached under ID, or null if there is none */
+    synchronized Object get(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /* Caches VALUE, whose contents take SIZE bytes, under ID, evicting the
+       least recently used entries to make room */
+    synchronized void put(String id, Object value, long size) {
+        if (size > budget) {
+            return;
+        }
+        Entry old = entries.put(id, new Entry(value, size));
+        if (old != null) {
+            used -= old.size;
+        }
+        used += size;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (used > budget) {
+            used -= eldest.next().size;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    /* Returns a one-line summary of the counters, e.g. for core.timings */
+    synchronized String stats() {
+        return String.format("object cache: %d hits, %d misses, %d evictions,"
+                + " %d objects in %d of %d bytes", hits, misses, evictions,
+                entries.size(), used, budget);
+    }
+
+    /* Returns true if anything was looked up in the cache of this process */
+    static synchronized boolean used() {
+        return cache != null && cache.hits() + cache.misses() > 0;
+    }
+}
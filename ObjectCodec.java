@@ -0,0 +1,396 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content: The on-disk encoding of everything gitlet stores. Each record
+ *          starts with a 4-byte header: the magic bytes "GL", a type and
+ *          a format version. Strings and byte arrays are prefixed with
+ *          their length, counts come before the entries they count, and
+ *          object IDs are written as raw 20-byte SHA-1s.
+ *
+ *          COMMIT: id, parent count (0 to 2), parent ids, message, timestamp,
+ *                  file count, then (file name, blob id) pairs. Version 1
+ *                  commits have at most one parent.
+ *          BLOB:   flags, then either the raw file contents up to the end
+ *                  (RAW) or the 8-byte length of the contents followed by
+ *                  the deflated contents (DEFLATE).
+ *          TREE:   current branch, current commit id, branch count,
+ *                  (branch name, commit id) pairs, commit count, commit ids.
+ *                  No longer written since the tree was split into HEAD,
+ *                  refs and the CommitLog; only read by migrate.
+ *          MANIFEST: the blob of a file stored in chunks: its length,
+ *                  chunk count, then (chunk id, chunk length) pairs. Each
+ *                  chunk is a BLOB of its own.
+ *          STAGE:  removed count, removed names, staged count,
+ *                  (file name, blob id) pairs, stat count, then (file name,
+ *                  blob id, mtime, size, inode) entries. Before version 3
+ *                  the staged pairs held the file contents and there were
+ *                  no stat entries.
+ */
+
+class ObjectCodec {
+    static final byte MAGIC_0 = 'G';
+    static final byte MAGIC_1 = 'L';
+    static final int VERSION = 3;
+
+    static final int COMMIT = 1;
+    static final int BLOB = 2;
+    static final int TREE = 3;
+    static final int STAGE = 4;
+    static final int MANIFEST = 5;
+
+    private static final int HEADER_SIZE = 4;
+
+    /* Blob flags: contents are stored as they are, or deflated */
+    static final int RAW = 0;
+    static final int DEFLATE = 1;
+
+    /* The contents of a TREE record */
+    static class TreeRecord {
+        String currBranch;
+        HashMap<String, String> branchPointers = new HashMap<>();
+        ArrayList<String> nodeIds = new ArrayList<>();
+    }
+
+    /* The contents of a MANIFEST record */
+    static class Manifest {
+        long length;
+        ArrayList<String> chunkIds = new ArrayList<>();
+        ArrayList<Integer> chunkLengths = new ArrayList<>();
+    }
+
+    /* Returns the encoding of OBJ, which must be a CommitNode, a Blob,
+       a Manifest or a StagingArea. */
+    static byte[] encode(Object obj) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (obj instanceof CommitNode) {
+                writeCommit(out, (CommitNode) obj);
+            } else if (obj instanceof CommitNode.Blob) {
+                writeBlob(out, ((CommitNode.Blob) obj).content,
+                        Config.getConfig().compressionLevel());
+            } else if (obj instanceof Manifest) {
+                writeManifest(out, (Manifest) obj);
+            } else if (obj instanceof StagingArea) {
+                writeStage(out, (StagingArea) obj);
+            } else {
+                throw new IllegalArgumentException("cannot encode " + obj.getClass());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /* Returns the object encoded in BYTES. */
+    static Object decode(byte[] bytes) {
+        if (isEncoded(bytes) && bytes[2] == BLOB) {
+            return decodeBlob(ByteBuffer.wrap(bytes));
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int type = readHeader(in);
+            switch (type) {
+                case COMMIT:
+                    return readCommit(in);
+                case TREE:
+                    return readTree(in);
+                case STAGE:
+                    return readStage(in, bytes[3]);
+                case MANIFEST:
+                    return readManifest(in);
+                default:
+                    throw new IllegalArgumentException("unknown object type " + type);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /* Returns the blob encoded in the remaining bytes of BYTES. Deflated
+       contents are inflated straight into the blob's content array. */
+    static CommitNode.Blob decodeBlob(ByteBuffer bytes) {
+        int flags = bytes.get(bytes.position() + HEADER_SIZE);
+        bytes.position(bytes.position() + HEADER_SIZE + 1);
+        byte[] content;
+        if (flags == RAW) {
+            content = new byte[bytes.remaining()];
+            bytes.get(content);
+        } else if (flags == DEFLATE) {
+            content = new byte[Math.toIntExact(bytes.getLong())];
+            Compression.inflate(bytes, content);
+        } else {
+            throw new IllegalArgumentException("unknown blob flags " + flags);
+        }
+        return new CommitNode.Blob(null, content);
+    }
+
+    /* Copies the contents of the blob encoded in IN to OUT, inflating them on
+       the way if needed, without ever holding the whole blob in memory.
+       If IN holds a manifest instead, nothing is copied and the manifest
+       is returned, so that the caller can copy its chunks; otherwise
+       returns null. */
+    static Manifest copyBlob(InputStream in, OutputStream out) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int type = readHeader(data);
+        if (type == MANIFEST) {
+            return readManifest(data);
+        } else if (type != BLOB) {
+            throw new IllegalArgumentException("not a blob");
+        }
+        int flags = data.readUnsignedByte();
+        if (flags == RAW) {
+            data.transferTo(out);
+        } else if (flags == DEFLATE) {
+            data.readLong();
+            try (InputStream inflated = Compression.inflating(data)) {
+                inflated.transferTo(out);
+            }
+        } else {
+            throw new IllegalArgumentException("unknown blob flags " + flags);
+        }
+        return null;
+    }
+
+    /* Writes the header of a blob of LENGTH bytes to OUT and returns a stream
+       to write its contents to, deflating them at LEVEL unless LEVEL is 0.
+       Closing the returned stream finishes the blob but leaves OUT open. */
+    static OutputStream blobWriter(OutputStream out, long length, int level)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        writeHeader(data, BLOB);
+        if (level == 0) {
+            data.writeByte(RAW);
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        data.writeByte(DEFLATE);
+        data.writeLong(length);
+        return Compression.deflating(out, level);
+    }
+
+    /* Returns BYTES with any compression of a blob's contents undone. Packs
+       store objects this way, so that deltas are taken between the
+       contents rather than between their compressed forms. */
+    static byte[] toRaw(byte[] bytes) {
+        if (!isEncoded(bytes) || bytes[2] != BLOB || bytes[HEADER_SIZE] == RAW) {
+            return bytes;
+        }
+        byte[] content = decodeBlob(ByteBuffer.wrap(bytes)).content;
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(content.length + HEADER_SIZE + 1);
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            writeBlob(out, content, 0);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return raw.toByteArray();
+    }
+
+    /* Returns true if BYTES starts with a codec header */
+    static boolean isEncoded(byte[] bytes) {
+        return bytes.length >= HEADER_SIZE && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1;
+    }
+
+    private static void writeHeader(DataOutputStream out, int type) throws IOException {
+        out.writeByte(MAGIC_0);
+        out.writeByte(MAGIC_1);
+        out.writeByte(type);
+        out.writeByte(VERSION);
+    }
+
+    /* Reads and checks a header, returning the type it announces */
+    private static int readHeader(DataInputStream in) throws IOException {
+        if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+            throw new IllegalArgumentException("not a gitlet object; run 'migrate' first");
+        }
+        int type = in.readUnsignedByte();
+        int version = in.readUnsignedByte();
+        if (version > VERSION) {
+            throw new IllegalArgumentException("unsupported format version " + version);
+        }
+        return type;
+    }
+
+    /* Writes a blob holding CONTENT, deflated at LEVEL unless LEVEL is 0 */
+    private static void writeBlob(DataOutputStream out, byte[] content, int level)
+            throws IOException {
+        writeHeader(out, BLOB);
+        if (level == 0) {
+            out.writeByte(RAW);
+            out.write(content);
+        } else {
+            out.writeByte(DEFLATE);
+            out.writeLong(content.length);
+            out.write(Compression.deflate(content, level));
+        }
+    }
+
+    private static void writeCommit(DataOutputStream out, CommitNode node) throws IOException {
+        writeHeader(out, COMMIT);
+        writeId(out, node.commitID);
+        int parents = node.parentName == null ? 0 : node.secondParent == null ? 1 : 2;
+        out.writeByte(parents);
+        if (parents > 0) {
+            writeId(out, node.parentName);
+        }
+        if (parents > 1) {
+            writeId(out, node.secondParent);
+        }
+        writeString(out, node.message);
+        writeString(out, node.timeStamp);
+        out.writeInt(node.fileNames.size());
+        for (Map.Entry<String, String> file : node.fileNames.entrySet()) {
+            writeString(out, file.getKey());
+            writeId(out, file.getValue());
+        }
+    }
+
+    private static CommitNode readCommit(DataInputStream in) throws IOException {
+        CommitNode node = new CommitNode();
+        node.commitID = readId(in);
+        int parents = in.readUnsignedByte();
+        node.parentName = parents > 0 ? readId(in) : null;
+        node.secondParent = parents > 1 ? readId(in) : null;
+        node.message = readString(in);
+        node.timeStamp = readString(in);
+        for (int n = in.readInt(); n > 0; --n) {
+            String name = readString(in);
+            node.fileNames.put(name, readId(in));
+        }
+        return node;
+    }
+
+    private static TreeRecord readTree(DataInputStream in) throws IOException {
+        TreeRecord tree = new TreeRecord();
+        tree.currBranch = readString(in);
+        readId(in);
+        for (int n = in.readInt(); n > 0; --n) {
+            String name = readString(in);
+            tree.branchPointers.put(name, readId(in));
+        }
+        for (int n = in.readInt(); n > 0; --n) {
+            tree.nodeIds.add(readId(in));
+        }
+        return tree;
+    }
+
+    private static void writeManifest(DataOutputStream out, Manifest manifest)
+            throws IOException {
+        writeHeader(out, MANIFEST);
+        out.writeLong(manifest.length);
+        out.writeInt(manifest.chunkIds.size());
+        for (int i = 0; i < manifest.chunkIds.size(); ++i) {
+            writeId(out, manifest.chunkIds.get(i));
+            out.writeInt(manifest.chunkLengths.get(i));
+        }
+    }
+
+    private static Manifest readManifest(DataInputStream in) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.length = in.readLong();
+        for (int n = in.readInt(); n > 0; --n) {
+            manifest.chunkIds.add(readId(in));
+            manifest.chunkLengths.add(in.readInt());
+        }
+        return manifest;
+    }
+
+    private static void writeStage(DataOutputStream out, StagingArea stage) throws IOException {
+        writeHeader(out, STAGE);
+        out.writeInt(stage.getRemovedSize());
+        for (String name : stage.getRemovedFiles()) {
+            writeString(out, name);
+        }
+        out.writeInt(stage.getAddedSize());
+        for (Map.Entry<String, String> staged : stage.stagedBlobs.entrySet()) {
+            writeString(out, staged.getKey());
+            writeId(out, staged.getValue());
+        }
+        out.writeInt(stage.stats.size());
+        for (Map.Entry<String, StagingArea.Stat> entry : stage.stats.entrySet()) {
+            StagingArea.Stat stat = entry.getValue();
+            writeString(out, entry.getKey());
+            writeId(out, stat.blobId);
+            out.writeLong(stat.mtime);
+            out.writeLong(stat.size);
+            out.writeLong(stat.inode);
+        }
+    }
+
+    /* Reads a stage written with format VERSION. Older stages carry the
+       staged contents, which are moved into the object store. */
+    private static StagingArea readStage(DataInputStream in, int version) throws IOException {
+        StagingArea stage = new StagingArea();
+        for (int n = in.readInt(); n > 0; --n) {
+            stage.getRemovedFiles().add(readString(in));
+        }
+        for (int n = in.readInt(); n > 0; --n) {
+            String name = readString(in);
+            if (version < 3) {
+                stage.stageContents(name, readBytes(in));
+            } else {
+                stage.stagedBlobs.put(name, readId(in));
+            }
+        }
+        if (version < 3) {
+            return stage;
+        }
+        for (int n = in.readInt(); n > 0; --n) {
+            String name = readString(in);
+            String blobId = readId(in);
+            stage.stats.put(name, new StagingArea.Stat(in.readLong(), in.readLong(),
+                    in.readLong(), blobId));
+        }
+        return stage;
+    }
+
+    private static void writeId(DataOutputStream out, String id) throws IOException {
+        out.write(Utils.hexToBytes(id));
+    }
+
+    private static String readId(DataInputStream in) throws IOException {
+        byte[] id = new byte[SortedIdFile.ID_LENGTH];
+        in.readFully(id);
+        return Utils.bytesToHex(id);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        writeBytes(out, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return b;
+    }
+}
@@ -0,0 +1,42 @@
+package gitlet;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Content: An ObjectStore holds the immutable objects of a repository
+ *          (commits and blobs) keyed by their 40-character hex ID.
+ *          Nothing outside a backend should know where or how objects
+ *          are laid out on disk; callers only go through these methods.
+ */
+
+public interface ObjectStore {
+
+    /* Returns true if an object with ID is stored. */
+    boolean has(String id);
+
+    /* Returns the stored bytes of object ID. Throws IllegalArgumentException
+       if there is no such object. */
+    byte[] read(String id);
+
+    /* Stores DATA as object ID. Objects are immutable, so writing an ID
+       that is already stored does nothing. */
+    void write(String id, byte[] data);
+
+    /* Returns a stream over the stored bytes of object ID, which the caller
+       must close. Throws IllegalArgumentException if there is no such object. */
+    InputStream stream(String id);
+
+    /* Returns a stream that stores the bytes written to it as a new object,
+       for objects too large to hold in memory. Their ID is only known once
+       they are written, so nothing is stored until Output.commit is called;
+       closing the stream without committing drops the object. */
+    Output create();
+
+    /* A new object being written */
+    abstract class Output extends OutputStream {
+
+        /* Stores everything written so far as object ID. */
+        public abstract void commit(String id);
+    }
+}
@@ -0,0 +1,364 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content: A packfile holds many objects back to back in one file
+ *          (pack-<name>.pack), next to a sorted index (pack-<name>.idx)
+ *          of (objectId, offset, length) records. Both files are
+ *          memory-mapped, so reading an object is a binary search in
+ *          the index and a slice of the pack: no open, no read syscall.
+ *
+ *          Pack layout: "PACK", version, object count, then the objects.
+ *          Index record: raw 20-byte ID, 8-byte offset, 4-byte length.
+ *
+ *          From version 2 on, each entry starts with a type byte. A WHOLE
+ *          entry holds the object itself; a DELTA entry holds the raw ID of
+ *          a base object in the same pack followed by a Delta against it.
+ *          Chains of deltas are at most MAX_DEPTH long, and the bases that
+ *          get resolved on the way are kept in a small cache, so checking
+ *          out many versions of one file does not rebuild the same bases
+ *          over and over.
+ *
+ *          From version 3 on, the object or delta in each entry is deflated
+ *          and preceded by its 4-byte uncompressed length. Objects are
+ *          packed in their uncompressed form (see ObjectCodec.toRaw), so
+ *          deltas are taken between contents, not between deflate streams.
+ */
+
+class PackFile {
+    private static final byte[] MAGIC = {'P', 'A', 'C', 'K'};
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_SIZE = SortedIdFile.ID_LENGTH + Long.BYTES + Integer.BYTES;
+    private static final byte WHOLE = 0;
+    private static final byte DELTA = 1;
+    /* longest chain of deltas allowed in front of a WHOLE entry */
+    private static final int MAX_DEPTH = 10;
+    /* number of recently packed objects tried as delta bases */
+    private static final int WINDOW = 10;
+    /* objects smaller than this are never deltified */
+    private static final int MIN_DELTA_SIZE = 64;
+    private static final long BASE_CACHE_BYTES = 16L << 20;
+
+    private final File packFile;
+    private final File idxFile;
+    private final SortedIdFile index;
+    private final MappedByteBuffer data;
+    private final int version;
+    private final BaseCache bases = new BaseCache(BASE_CACHE_BYTES);
+
+    /* Opens the pack whose index is IDXFILE */
+    PackFile(File idxFile) {
+        this.idxFile = idxFile;
+        String name = idxFile.getPath();
+        packFile = new File(name.substring(0, name.length() - ".idx".length()) + ".pack");
+        index = new SortedIdFile(idxFile, RECORD_SIZE);
+        try (RandomAccessFile raf = new RandomAccessFile(packFile, "r")) {
+            FileChannel channel = raf.getChannel();
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        byte[] magic = new byte[MAGIC.length];
+        data.get(0, magic);
+        version = data.getInt(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC) || version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("not a gitlet pack: " + packFile);
+        }
+    }
+
+    /* Returns true if object ID is in this pack */
+    boolean has(byte[] id) {
+        return index.contains(id);
+    }
+
+    /* Returns a read-only view of object ID, or null if the pack does not
+       hold it. Whole objects are viewed in place inside the mapped pack;
+       deltified ones are rebuilt first. */
+    ByteBuffer slice(byte[] id) {
+        int i = index.find(id);
+        if (i < 0) {
+            return null;
+        }
+        ByteBuffer entry = entry(i);
+        if (version == 1) {
+            return entry.asReadOnlyBuffer();
+        }
+        if (entry.get(0) == WHOLE && version == 2) {
+            return entry.slice(1, entry.limit() - 1).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(resolve(entry, 0)).asReadOnlyBuffer();
+    }
+
+    /* Returns the contents of object ID in an array of its own, or null if
+       the pack does not hold it. Inflated and rebuilt objects are handed
+       over as they come out, without another copy. */
+    byte[] read(byte[] id) {
+        int i = index.find(id);
+        if (i < 0) {
+            return null;
+        }
+        ByteBuffer entry = entry(i);
+        if (version == 1) {
+            return payload(entry, 0);
+        }
+        return resolve(entry, 0);
+    }
+
+    /* Returns the object or delta stored in ENTRY from byte FROM on,
+       inflating it straight into the returned array if the pack is
+       compressed */
+    private byte[] payload(ByteBuffer entry, int from) {
+        if (version < 3) {
+            byte[] result = new byte[entry.limit() - from];
+            entry.get(from, result);
+            return result;
+        }
+        byte[] result = new byte[entry.getInt(from)];
+        Compression.inflate(entry.slice(from + Integer.BYTES,
+                entry.limit() - from - Integer.BYTES), result);
+        return result;
+    }
+
+    /* Returns the stored entry of the Ith object in the index */
+    private ByteBuffer entry(int i) {
+        ByteBuffer record = index.record(i);
+        long offset = record.getLong(0);
+        int length = record.getInt(Long.BYTES);
+        return data.slice((int) offset, length);
+    }
+
+    /* Returns the contents of the object stored as ENTRY, which lies DEPTH
+       deltas away from the object first asked for */
+    private byte[] resolve(ByteBuffer entry, int depth) {
+        if (entry.get(0) == WHOLE) {
+            return payload(entry, 1);
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("delta chain too long in " + packFile);
+        }
+        byte[] baseId = new byte[SortedIdFile.ID_LENGTH];
+        entry.get(1, baseId);
+        byte[] delta = payload(entry, 1 + baseId.length);
+
+        String key = Utils.bytesToHex(baseId);
+        byte[] base;
+        synchronized (bases) {
+            base = bases.get(key);
+        }
+        if (base == null) {
+            int i = index.find(baseId);
+            if (i < 0) {
+                throw new IllegalArgumentException("missing delta base " + key);
+            }
+            base = resolve(entry(i), depth + 1);
+            synchronized (bases) {
+                bases.put(key, base);
+            }
+        }
+        return Delta.apply(base, delta);
+    }
+
+    /* Returns the number of objects in this pack */
+    int size() {
+        return index.size();
+    }
+
+    /* Adds the hex IDs of all the objects in this pack to IDS, in sorted order */
+    void addIds(List<String> ids) {
+        for (int i = 0; i < index.size(); ++i) {
+            ids.add(Utils.bytesToHex(index.id(i)));
+        }
+    }
+
+    /* Deletes the pack and its index */
+    void delete() {
+        idxFile.delete();
+        packFile.delete();
+    }
+
+    /* Writes the objects named by the sorted list IDS, read from SOURCE, into
+       a new pack in DIR and returns it. Both files are written under
+       temporary names and moved into place, the index last, so a pack
+       without an index is an unfinished one and is never opened.
+
+       Objects are packed largest first. Each one is tried as a delta
+       against the last WINDOW objects packed, and stored as the smallest
+       delta found if that is under half its size; otherwise it is stored
+       whole. */
+    static PackFile write(File dir, List<String> ids, ObjectStore source) {
+        dir.mkdirs();
+        String name = "pack-" + Utils.sha1(String.join("", ids));
+        File pack = new File(dir, name + ".pack");
+        File idx = new File(dir, name + ".idx");
+        File tmp = new File(dir, name + ".pack.tmp");
+
+        HashMap<String, Integer> sizes = new HashMap<>();
+        for (String id : ids) {
+            sizes.put(id, ObjectCodec.toRaw(source.read(id)).length);
+        }
+        List<String> order = new ArrayList<>(ids);
+        order.sort((a, b) -> Integer.compare(sizes.get(b), sizes.get(a)));
+
+        HashMap<String, Long> offsets = new HashMap<>();
+        HashMap<String, Integer> lengths = new HashMap<>();
+        HashMap<String, Integer> depths = new HashMap<>();
+        ArrayDeque<String> window = new ArrayDeque<>();
+        int level = Config.getConfig().compressionLevel();
+        HashMap<String, byte[]> windowData = new HashMap<>();
+        try (FileChannel out = new FileOutputStream(tmp).getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC).putInt(VERSION).putInt(ids.size()).flip();
+            out.write(header);
+            long offset = HEADER_SIZE;
+            for (String id : order) {
+                byte[] object = ObjectCodec.toRaw(source.read(id));
+                String bestBase = null;
+                byte[] bestDelta = null;
+                if (object.length >= MIN_DELTA_SIZE) {
+                    for (String candidate : window) {
+                        if (depths.get(candidate) >= MAX_DEPTH) {
+                            continue;
+                        }
+                        byte[] delta = Delta.create(windowData.get(candidate), object);
+                        if (delta.length < object.length / 2
+                                && (bestDelta == null || delta.length < bestDelta.length)) {
+                            bestBase = candidate;
+                            bestDelta = delta;
+                        }
+                    }
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] payload;
+                if (bestDelta == null) {
+                    bytes.write(WHOLE);
+                    payload = object;
+                    depths.put(id, 0);
+                } else {
+                    bytes.write(DELTA);
+                    bytes.writeBytes(Utils.hexToBytes(bestBase));
+                    payload = bestDelta;
+                    depths.put(id, depths.get(bestBase) + 1);
+                }
+                bytes.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(payload.length).array());
+                Compression.deflate(payload, 0, payload.length, level, bytes);
+                ByteBuffer entry = ByteBuffer.wrap(bytes.toByteArray());
+                offsets.put(id, offset);
+                lengths.put(id, entry.limit());
+                offset += entry.limit();
+                out.write(entry);
+
+                window.addLast(id);
+                windowData.put(id, object);
+                if (window.size() > WINDOW) {
+                    windowData.remove(window.removeFirst());
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), pack.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ByteBuffer records = ByteBuffer.allocate(ids.size() * RECORD_SIZE);
+        for (String id : ids) {
+            records.put(Utils.hexToBytes(id)).putLong(offsets.get(id)).putInt(lengths.get(id));
+        }
+        File idxTmp = new File(dir, name + ".idx.tmp");
+        Utils.writeContents(idxTmp, records.array());
+        try {
+            Files.move(idxTmp.toPath(), idx.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return new PackFile(idx);
+    }
+
+    /* Returns true if this pack and OTHER are stored in the same files */
+    boolean sameFiles(PackFile other) {
+        return idxFile.equals(other.idxFile);
+    }
+
+    /* An InputStream over a ByteBuffer, so mapped objects can be streamed
+       without first being copied out of the mapping */
+    static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? Byte.toUnsignedInt(buffer.get()) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /* Resolved delta bases, least recently used first, holding at most
+       a fixed number of bytes */
+    static class BaseCache extends LinkedHashMap<String, byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final long budget;
+        private long bytes;
+
+        BaseCache(long budget) {
+            super(16, 0.75f, true);
+            this.budget = budget;
+        }
+
+        @Override
+        public byte[] put(String key, byte[] value) {
+            byte[] old = super.put(key, value);
+            bytes += value.length - (old == null ? 0 : old.length);
+            Iterator<Map.Entry<String, byte[]>> eldest = entrySet().iterator();
+            while (bytes > budget && eldest.hasNext()) {
+                Map.Entry<String, byte[]> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    break;
+                }
+                bytes -= entry.getValue().length;
+                eldest.remove();
+            }
+            return old;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/* Tests of Delta and PackFile: objects packed as deltas of one another
+   read back unchanged.
+   @author
+ */
+public class PackFileTest {
+    private static final int SIZE = 4096;
+
+    private File dir;
+
+    @Before
+    public void makeDir() throws IOException {
+        dir = Files.createTempDirectory("gitlet-pack-test").toFile();
+    }
+
+    @After
+    public void removeDir() {
+        delete(dir);
+    }
+
+    /* A delta applied to its base gives the target back */
+    @Test
+    public void deltaTest() {
+        Random random = new Random(71);
+        byte[] base = randomBytes(random, SIZE);
+        for (byte[] target : versions(random, base, 20)) {
+            byte[] delta = Delta.create(base, target);
+            assertArrayEquals(target, Delta.apply(base, delta));
+        }
+        byte[] unrelated = randomBytes(random, 100);
+        assertArrayEquals(unrelated, Delta.apply(base, Delta.create(base, unrelated)));
+        assertArrayEquals(new byte[0], Delta.apply(base, Delta.create(base, new byte[0])));
+        assertArrayEquals(base, Delta.apply(new byte[0], Delta.create(new byte[0], base)));
+    }
+
+    /* Versions of one file packed together are stored as deltas, and
+       read back as they were written */
+    @Test
+    public void roundTripTest() {
+        Random random = new Random(72);
+        LooseObjectStore loose = new LooseObjectStore(new File(dir, "objects"));
+        byte[] base = randomBytes(random, SIZE);
+        List<byte[]> objects = new ArrayList<>();
+        objects.add(base);
+        objects.addAll(versions(random, base, 8));
+        objects.add("small".getBytes());
+        List<String> ids = new ArrayList<>();
+        for (byte[] object : objects) {
+            String id = Utils.sha1(object);
+            loose.write(id, object);
+            ids.add(id);
+        }
+        Collections.sort(ids);
+
+        File packDir = new File(dir, "pack");
+        PackFile pack = PackFile.write(packDir, ids, loose);
+        assertEquals(ids.size(), pack.size());
+        for (byte[] object : objects) {
+            byte[] id = Utils.hexToBytes(Utils.sha1(object));
+            assertTrue(pack.has(id));
+            assertArrayEquals(object, pack.read(id));
+        }
+        assertFalse(pack.has(Utils.hexToBytes(Utils.sha1("missing"))));
+
+        /* the random bytes barely compress, so a pack holding every
+           version whole would be several times the size of one */
+        long packSize = 0;
+        for (File file : packDir.listFiles()) {
+            if (file.getName().endsWith(".pack")) {
+                packSize += file.length();
+            }
+        }
+        assertTrue("pack of " + packSize + " bytes", packSize < 2 * SIZE);
+
+        PackFile reopened = new PackFile(new File(packDir, "pack-"
+                + Utils.sha1(String.join("", ids)) + ".idx"));
+        byte[] object = objects.get(3);
+        assertArrayEquals(object, reopened.read(Utils.hexToBytes(Utils.sha1(object))));
+    }
+
+    private static byte[] randomBytes(Random random, int n) {
+        byte[] bytes = new byte[n];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /* Returns N versions of BASE, each with a few bytes changed, inserted
+       or deleted */
+    private static List<byte[]> versions(Random random, byte[] base, int n) {
+        List<byte[]> versions = new ArrayList<>();
+        byte[] prev = base;
+        for (int v = 0; v < n; ++v) {
+            byte[] next = Arrays.copyOf(prev, prev.length);
+            next[random.nextInt(next.length)] ^= 1;
+            int at = random.nextInt(next.length);
+            byte[] inserted = randomBytes(random, 1 + random.nextInt(40));
+            byte[] grown = new byte[next.length + inserted.length];
+            System.arraycopy(next, 0, grown, 0, at);
+            System.arraycopy(inserted, 0, grown, at, inserted.length);
+            System.arraycopy(next, at, grown, at + inserted.length, next.length - at);
+            int cut = random.nextInt(grown.length - 50);
+            byte[] shrunk = new byte[grown.length - 20];
+            System.arraycopy(grown, 0, shrunk, 0, cut);
+            System.arraycopy(grown, cut + 20, shrunk, cut, grown.length - cut - 20);
+            versions.add(shrunk);
+            prev = shrunk;
+        }
+        return versions;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
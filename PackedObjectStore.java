@@ -0,0 +1,167 @@
+package gitlet;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+
+/**
+ * Content: The ObjectStore of a repository: the packfiles in pack/ are
+ *          searched first, then the loose objects. New objects are always
+ *          written loose; pack() later moves them all into one packfile.
+ */
+
+public class PackedObjectStore implements ObjectStore {
+    private final LooseObjectStore loose;
+    private final File packDir;
+    private final List<PackFile> packs = new ArrayList<>();
+
+    public PackedObjectStore(File objectDir) {
+        loose = new LooseObjectStore(objectDir);
+        packDir = new File(objectDir, "pack");
+        File[] idxFiles = packDir.listFiles((dir, name) -> name.endsWith(".idx"));
+        if (idxFiles != null) {
+            for (File idx : idxFiles) {
+                packs.add(new PackFile(idx));
+            }
+        }
+    }
+
+    /* Returns the mapped bytes of object ID from a pack, or null if no pack has it */
+    private ByteBuffer fromPacks(String id) {
+        if (packs.isEmpty()) {
+            return null;
+        }
+        byte[] raw = Utils.hexToBytes(id);
+        for (PackFile pack : packs) {
+            ByteBuffer object = pack.slice(raw);
+            if (object != null) {
+                return object;
+            }
+        }
+        return null;
+    }
+
+    /* Returns true if a pack holds object ID; only the indexes are read */
+    private boolean inPacks(String id) {
+        if (packs.isEmpty()) {
+            return false;
+        }
+        byte[] raw = Utils.hexToBytes(id);
+        for (PackFile pack : packs) {
+            if (pack.has(raw)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean has(String id) {
+        return inPacks(id) || loose.has(id);
+    }
+
+    @Override
+    public byte[] read(String id) {
+        if (!packs.isEmpty()) {
+            byte[] raw = Utils.hexToBytes(id);
+            for (PackFile pack : packs) {
+                byte[] object = pack.read(raw);
+                if (object != null) {
+                    return object;
+                }
+            }
+        }
+        return loose.read(id);
+    }
+
+    @Override
+    public void write(String id, byte[] data) {
+        if (!inPacks(id)) {
+            loose.write(id, data);
+        }
+    }
+
+    @Override
+    public InputStream stream(String id) {
+        ByteBuffer object = fromPacks(id);
+        if (object == null) {
+            return loose.stream(id);
+        }
+        return new PackFile.BufferInputStream(object);
+    }
+
+    @Override
+    public Output create() {
+        return loose.create();
+    }
+
+    /* Combines every loose object and every existing pack into a single new
+       pack, then removes what it replaced. Objects bigger than the
+       core.bigFileThreshold setting stay loose. Returns the number of
+       objects in the new pack. */
+    public int pack() {
+        long threshold = Config.getConfig().bigFileThreshold();
+        List<String> looseIds = new ArrayList<>();
+        for (String id : loose.ids()) {
+            if (loose.sizeOf(id) <= threshold) {
+                looseIds.add(id);
+            }
+        }
+        TreeSet<String> all = new TreeSet<>(looseIds);
+        for (PackFile pack : packs) {
+            List<String> ids = new ArrayList<>();
+            pack.addIds(ids);
+            all.addAll(ids);
+        }
+        if (looseIds.isEmpty() && packs.size() <= 1) {
+            return all.size();
+        }
+        PackFile packed = PackFile.write(packDir, new ArrayList<>(all), this);
+        for (PackFile pack : packs) {
+            if (!pack.sameFiles(packed)) {
+                pack.delete();
+            }
+        }
+        packs.clear();
+        packs.add(packed);
+        for (String id : looseIds) {
+            loose.delete(id);
+        }
+        return packed.size();
+    }
+
+    /* Replaces every object's bytes with CONVERT(id, bytes). Converted
+       objects are written loose; if there were packs, everything is
+       packed again afterwards. */
+    void rewriteAll(BiFunction<String, byte[], byte[]> convert) {
+        for (String id : loose.ids()) {
+            byte[] bytes = loose.read(id);
+            byte[] result = convert.apply(id, bytes);
+            if (result != bytes) {
+                loose.replace(id, result);
+            }
+        }
+        if (packs.isEmpty()) {
+            return;
+        }
+        for (PackFile pack : packs) {
+            List<String> ids = new ArrayList<>();
+            pack.addIds(ids);
+            for (String id : ids) {
+                ByteBuffer object = pack.slice(Utils.hexToBytes(id));
+                byte[] bytes = new byte[object.remaining()];
+                object.get(bytes);
+                loose.write(id, convert.apply(id, bytes));
+            }
+        }
+        for (PackFile pack : packs) {
+            pack.delete();
+        }
+        packs.clear();
+        pack();
+    }
+}
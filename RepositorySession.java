@@ -0,0 +1,122 @@
+package gitlet;
+
+/**
+ * Content: The unit of work of a command. Within a session, the tree
+ *          (HEAD and the branch refs) and the stage are each read at most
+ *          once, the first time they are asked for, and every later
+ *          CommitTree.load or StagingArea.load returns the same object.
+ *          Changes to them are only marked; save writes the changed ones,
+ *          once, when the command is done. A command that fails leaves
+ *          the repository as it found it, apart from objects and commits
+ *          already written, which nothing points at yet.
+ *
+ *          Main.run opens a session around every command. Sessions nest:
+ *          a batch opens one around all of its commands, and only the
+ *          outermost save writes anything, so the batch decides when
+ *          (see Batch). To keep a failed command from leaving its half-made
+ *          changes in memory for a later flush to write, the batch takes a
+ *          checkpoint before each command and rolls back to it if the
+ *          command fails. Each thread has its own session, so the commands
+ *          a Daemon runs concurrently never share one.
+ */
+
+class RepositorySession {
+    private static final ThreadLocal<RepositorySession> CURRENT = new ThreadLocal<>();
+
+    private int depth;
+    private CommitTree tree;
+    private StagingArea stage;
+    private boolean stageChanged;
+    /* the tree, the encoded stage and stageChanged at the last checkpoint;
+       a null tree or stage was not read yet, so the disk still holds it */
+    private CommitTree savedTree;
+    private byte[] savedStage;
+    private boolean savedStageChanged;
+
+    private RepositorySession() {
+    }
+
+    /* Opens a session on this thread, or joins the one already open */
+    static RepositorySession open() {
+        RepositorySession session = CURRENT.get();
+        if (session == null) {
+            session = new RepositorySession();
+            CURRENT.set(session);
+        }
+        session.depth++;
+        return session;
+    }
+
+    /* Returns the session open on this thread, or null */
+    static RepositorySession current() {
+        return CURRENT.get();
+    }
+
+    /* Returns the tree of the repository, reading HEAD the first time */
+    CommitTree tree() {
+        if (tree == null) {
+            tree = CommitTree.read();
+            tree.deferred = true;
+        }
+        return tree;
+    }
+
+    /* Returns the stage of the repository, reading it the first time */
+    StagingArea stage() {
+        if (stage == null) {
+            stage = StagingArea.read();
+        }
+        return stage;
+    }
+
+    /* Returns true if STAGE is the stage of this session */
+    boolean holds(StagingArea stage) {
+        return stage == this.stage;
+    }
+
+    void stageChanged() {
+        stageChanged = true;
+    }
+
+    /* Remembers the tree and the stage as they are now, changes not
+       written yet included */
+    void checkpoint() {
+        savedTree = tree == null ? null : tree.copy();
+        savedStage = stage == null ? null : FileUtil.changeToByteArr(stage);
+        savedStageChanged = stageChanged;
+    }
+
+    /* Drops every change made to the tree and the stage since the last
+       checkpoint */
+    void rollback() {
+        tree = savedTree == null ? null : savedTree.copy();
+        stage = savedStage == null ? null : (StagingArea) FileUtil.fromByteArr(savedStage);
+        stageChanged = savedStageChanged;
+    }
+
+    /* Writes out what changed, unless this session is nested in another */
+    void save() {
+        if (depth == 1) {
+            flush();
+        }
+    }
+
+    /* Writes out what changed since the last flush */
+    void flush() {
+        if (tree != null) {
+            tree.flush();
+        }
+        if (stageChanged) {
+            stage.write();
+            stageChanged = false;
+        }
+    }
+
+    /* Leaves the session; the outermost close ends it, dropping whatever
+       was not saved */
+    void close() {
+        if (--depth == 0) {
+            CURRENT.remove();
+        }
+    }
+}
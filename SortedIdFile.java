@@ -0,0 +1,163 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Content: A file of fixed-width records kept sorted by their leading
+ *          20-byte object ID. The file is memory-mapped, so a lookup is
+ *          a binary search over the mapping and touches only log(n)
+ *          records instead of reading the whole file.
+ */
+
+class SortedIdFile {
+
+    /* Length in bytes of a raw SHA-1 object ID. */
+    static final int ID_LENGTH = 20;
+
+    /**
+     * file: the file holding the records.
+     * recordSize: the width of each record, ID included.
+     * buffer: the read-only mapping of file; null if file is empty.
+     * count: the number of records in file.
+     */
+
+    private final File file;
+    private final int recordSize;
+    private MappedByteBuffer buffer;
+    private int count;
+
+    SortedIdFile(File file, int recordSize) {
+        this.file = file;
+        this.recordSize = recordSize;
+        map();
+    }
+
+    /* Returns the number of records. */
+    int size() {
+        return count;
+    }
+
+    /* Returns the index of the record whose ID is ID, or
+       (-(insertion point) - 1) if there is none. */
+    int find(byte[] id) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareAt(mid, id, ID_LENGTH);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /* Returns true if a record with ID exists. */
+    boolean contains(byte[] id) {
+        return find(id) >= 0;
+    }
+
+    /* Returns the ID of the Ith record. */
+    byte[] id(int i) {
+        byte[] id = new byte[ID_LENGTH];
+        buffer.get(i * recordSize, id);
+        return id;
+    }
+
+    /* Returns a view of the Ith record, positioned just past its ID. */
+    ByteBuffer record(int i) {
+        return buffer.slice(i * recordSize + ID_LENGTH, recordSize - ID_LENGTH);
+    }
+
+    /* Inserts RECORD, which must be recordSize bytes starting with its ID.
+       Replaces the record already stored under that ID, if any. This
+       rewrites the whole file: the new file is written beside the old one
+       and renamed over it, so readers never see a half-written index.
+       Callers adding records one at a time keep them in a tail of their
+       own and merge it in with insertAll (see BlobIndex, CommitIndex). */
+    void insert(byte[] record) {
+        insertAll(List.of(record));
+    }
+
+    /* Inserts all of RECORDS, as insert does, rewriting the file only once. */
+    void insertAll(List<byte[]> records) {
+        TreeMap<byte[], byte[]> sorted = new TreeMap<>((a, b) -> Arrays.compareUnsigned(
+                a, 0, ID_LENGTH, b, 0, ID_LENGTH));
+        for (byte[] record : records) {
+            sorted.put(record, record);
+        }
+        File tmp = new File(file.getPath() + ".lock");
+        try (FileChannel out = new FileOutputStream(tmp).getChannel()) {
+            int rest = 0;
+            for (byte[] record : sorted.values()) {
+                int pos = find(Arrays.copyOf(record, ID_LENGTH));
+                boolean replace = pos >= 0;
+                if (!replace) {
+                    pos = -pos - 1;
+                }
+                if (pos > rest) {
+                    out.write(buffer.slice(rest * recordSize, (pos - rest) * recordSize));
+                }
+                out.write(ByteBuffer.wrap(record));
+                rest = replace ? pos + 1 : pos;
+            }
+            if (rest < count) {
+                out.write(buffer.slice(rest * recordSize, (count - rest) * recordSize));
+            }
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException("cannot write " + tmp + ": " + excp.getMessage());
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("cannot replace " + file + ": "
+                    + excp.getMessage());
+        }
+        map();
+    }
+
+    /* Compares the first LEN bytes of the Ith record with KEY as unsigned bytes. */
+    int compareAt(int i, byte[] key, int len) {
+        int base = i * recordSize;
+        for (int k = 0; k < len; ++k) {
+            int cmp = Byte.toUnsignedInt(buffer.get(base + k)) - Byte.toUnsignedInt(key[k]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /* (Re)maps file into memory. */
+    private void map() {
+        buffer = null;
+        count = 0;
+        if (!file.isFile() || file.length() == 0) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            count = (int) (channel.size() / recordSize);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("cannot map " + file + ": " + excp.getMessage());
+        }
+    }
+}
@@ -1,23 +1,102 @@
 package gitlet;
 
 import java.io.File;
-import java.io.Serializable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-public class StagingArea implements Serializable {
+public class StagingArea {
 
     /* Stages files to be added or removed for later commits.
-    Also stores a set corresponding to tracked and removed files */
+    Staged files are written to the object store when they are added, so
+    the stage only keeps their blob IDs. It also caches the stat data
+    (mtime, size, inode) of every file it has hashed, together with the
+    resulting blob ID: a file whose stat data is unchanged is not read
+    again. */
+
+    /* Files modified this close (in nanoseconds) to the moment their stat
+       data is recorded may be modified again within the same mtime tick, so
+       their stat data is not trusted. */
+    private static final long RACY_WINDOW = TimeUnit.SECONDS.toNanos(2);
 
     private static StagingArea stagingArea = null;
     private HashSet<String> removedFiles;
-    public HashMap<String, CommitNode.Blob> stagedBlobs;
+    /* stagedBlobs: file name -> ID of the staged blob */
+    TreeMap<String, String> stagedBlobs;
+    /* stats: file name -> stat data of the file when it was last hashed */
+    HashMap<String, Stat> stats;
+    /* refreshed: true if stats changed since the stage was loaded */
+    private boolean refreshed;
+
+    /* The stat data of a working file, and the ID of the blob it hashed to */
+    static class Stat {
+        long mtime;
+        long size;
+        long inode;
+        String blobId;
+
+        Stat(long mtime, long size, long inode, String blobId) {
+            this.mtime = mtime;
+            this.size = size;
+            this.inode = inode;
+            this.blobId = blobId;
+        }
+
+        /* Returns the current stat data of FILE, or null if it does not exist */
+        static Stat of(File file) {
+            Path path = file.toPath();
+            try {
+                Map<String, Object> unix = Files.readAttributes(path,
+                        "unix:ino,size,lastModifiedTime", LinkOption.NOFOLLOW_LINKS);
+                return new Stat(((FileTime) unix.get("lastModifiedTime")).to(TimeUnit.NANOSECONDS),
+                        (Long) unix.get("size"), (Long) unix.get("ino"), null);
+            } catch (UnsupportedOperationException excp) {
+                return basicStat(path);
+            } catch (IOException excp) {
+                return null;
+            }
+        }
+
+        /* Stat data for file systems without inode numbers */
+        private static Stat basicStat(Path path) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path,
+                        BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                Object key = attrs.fileKey();
+                return new Stat(attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                        attrs.size(), key == null ? 0 : key.hashCode(), null);
+            } catch (IOException excp) {
+                return null;
+            }
+        }
+
+        boolean sameFile(Stat other) {
+            return mtime == other.mtime && size == other.size && inode == other.inode;
+        }
+    }
 
     public StagingArea() {
         removedFiles = new HashSet<>();
-        stagedBlobs = new HashMap<>();
+        stagedBlobs = new TreeMap<>();
+        stats = new HashMap<>();
     }
 
     public static StagingArea getStagingArea() {
@@ -27,6 +106,37 @@ public class StagingArea implements Serializable {
         return stagingArea;
     }
 
+    private static File file() {
+        return new File(GitLet.REPO + "/stagingArea");
+    }
+
+    /* Returns the stage of the current repository: the one of the open
+       RepositorySession, if any */
+    public static StagingArea load() {
+        RepositorySession session = RepositorySession.current();
+        return session == null ? read() : session.stage();
+    }
+
+    /* Reads the stage from its file */
+    static StagingArea read() {
+        return (StagingArea) FileUtil.deSerialize(file());
+    }
+
+    /* Saves this stage: marks it changed if it belongs to the open session,
+       which writes it when the command is done, else writes it now */
+    public void save() {
+        RepositorySession session = RepositorySession.current();
+        if (session != null && session.holds(this)) {
+            session.stageChanged();
+        } else {
+            write();
+        }
+    }
+
+    void write() {
+        FileUtil.serialize(file(), this);
+    }
+
     public Set<String> getAddedFiles() {
         return stagedBlobs.keySet();
     }
@@ -35,58 +145,249 @@ public class StagingArea implements Serializable {
         return removedFiles;
     }
 
+    /* Returns the files the next commit on top of CURR would have, as it
+       stands: file name -> blob ID */
+    TreeMap<String, String> nextCommit(CommitNode curr) {
+        TreeMap<String, String> files = new TreeMap<>(curr.fileNames);
+        files.keySet().removeAll(removedFiles);
+        files.putAll(stagedBlobs);
+        return files;
+    }
+
+    /* Returns true if stat data was recorded since the stage was loaded,
+       so that saving the stage spares the next command some hashing */
+    public boolean isRefreshed() {
+        return refreshed;
+    }
+
+    /* Returns the blob ID of the working file FILENAME, rehashing it only if
+       its stat data changed since it was last hashed. Returns null if the
+       file does not exist. */
+    public String hashFile(String filename) {
+        File file = new File(filename);
+        Stat now = Stat.of(file);
+        if (now == null) {
+            return null;
+        }
+        Stat cached = stats.get(filename);
+        if (cached != null && cached.blobId != null && cached.sameFile(now)) {
+            return cached.blobId;
+        }
+        String fileId = CommitNode.hashFile(file);
+        record(filename, now, fileId);
+        return fileId;
+    }
+
+    /* Records that the working file FILENAME now holds the blob FILEID,
+       e.g. after checking it out */
+    public void record(String filename, String fileId) {
+        Stat now = Stat.of(new File(filename));
+        if (now != null) {
+            record(filename, now, fileId);
+        }
+    }
+
+    private void record(String filename, Stat stat, String fileId) {
+        stat.blobId = fileId;
+        if (System.currentTimeMillis() * 1000000 - stat.mtime < RACY_WINDOW) {
+            /* keep the ID but make sure the stat data never matches */
+            stat.mtime = -1;
+        }
+        stats.put(filename, stat);
+        refreshed = true;
+    }
+
     public void addFile(String fileName) {
-        if (removedFiles.contains(fileName)) {
+        addFiles(List.of(fileName));
+    }
+
+    /* Stages every file in FILENAMES. The files are hashed, and new blobs
+       stored, on a pool of at most one thread per core. The workers are
+       handed the stat data they need up front and never touch the stage;
+       it is only updated once they have all finished, from this thread. */
+    public void addFiles(Collection<String> fileNames) {
+        CommitNode curr = CommitTree.load().getCurrPtr();
+        BlobIndex blobs = BlobIndex.getIndex();
+        GitLet.getObjectStore();
+        Config.getConfig();
+        int threads = Math.min(fileNames.size(), Runtime.getRuntime().availableProcessors());
+        List<Stat> hashed = new ArrayList<>();
+        blobs.deferWrites();
+        try {
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+            List<Future<Stat>> results = new ArrayList<>();
+            for (String fileName : fileNames) {
+                String committedId = curr.fileNames.get(fileName);
+                Stat cached = stats.get(fileName);
+                results.add(pool.submit(() -> stageable(fileName, cached, committedId)));
+            }
+            pool.shutdown();
+            RuntimeException failure = null;
+            for (Future<Stat> result : results) {
+                try {
+                    hashed.add(result.get());
+                } catch (ExecutionException excp) {
+                    if (failure == null) {
+                        failure = excp.getCause() instanceof RuntimeException
+                                ? (RuntimeException) excp.getCause()
+                                : new IllegalArgumentException(excp.getCause());
+                    }
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    pool.shutdownNow();
+                    throw new IllegalArgumentException(excp);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            blobs.flush();
+        }
+        Iterator<Stat> results = hashed.iterator();
+        for (String fileName : fileNames) {
+            Stat stat = results.next();
+            record(fileName, stat, stat.blobId);
             removedFiles.remove(fileName);
+            if (stat.blobId.equals(curr.fileNames.get(fileName))) {
+                stagedBlobs.remove(fileName);
+            } else {
+                stagedBlobs.put(fileName, stat.blobId);
+            }
         }
-        CommitNode.Blob stagedBlob = new CommitNode.Blob(fileName);
-        stagedBlobs.put(fileName, stagedBlob);
+    }
+
+    /* Hashes FILENAME, using the ID in CACHED, its stat data when last
+       hashed, if that did not change, and stores its blob unless it is
+       COMMITTEDID or already stored. Returns its stat data and blob ID.
+       Runs on the add pool. */
+    private static Stat stageable(String fileName, Stat cached, String committedId) {
+        File file = new File(fileName);
+        Stat now = Stat.of(file);
+        if (now == null) {
+            throw new GitletException("File does not exist");
+        }
+        if (cached != null && cached.blobId != null && cached.sameFile(now)) {
+            now.blobId = cached.blobId;
+        } else {
+            now.blobId = CommitNode.hashFile(file);
+        }
+        if (!now.blobId.equals(committedId) && !BlobIndex.getIndex().containsKey(now.blobId)) {
+            String storedId = CommitNode.saveBlob(file);
+            if (!storedId.equals(now.blobId)) {
+                /* changed while we were looking at it */
+                now.mtime = -1;
+                now.blobId = storedId;
+            }
+        }
+        return now;
+    }
+
+    /* Stages blob FILEID, which was just written to the working file
+       FILENAME, e.g. by a merge taking the other branch's version */
+    void stageWritten(String filename, String fileId) {
+        CommitNode curr = CommitTree.load().getCurrPtr();
+        record(filename, fileId);
+        removedFiles.remove(filename);
+        if (fileId.equals(curr.fileNames.get(filename))) {
+            stagedBlobs.remove(filename);
+        } else {
+            stagedBlobs.put(filename, fileId);
+        }
+    }
+
+    /* Stages CONTENT as the new version of FILENAME; used when converting
+       stages written before blobs were stored at add time */
+    void stageContents(String filename, byte[] content) {
+        String fileId = Utils.sha1(content);
+        CommitNode.saveBlob(fileId, content);
+        stagedBlobs.put(filename, fileId);
     }
 
     public void rm(String filename) {
-        File infile = new File(GitLet.REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(infile);
-        if (!tree.currPtr.fileNames.containsKey(filename)
+        CommitNode curr = CommitTree.load().getCurrPtr();
+        if (!curr.fileNames.containsKey(filename)
                 && !stagedBlobs.keySet().contains(filename)) {
-            System.out.println("No reason to remove the file");
-            System.exit(0);
+            throw new GitletException("No reason to remove the file");
         }
-        if (tree.currPtr.fileNames.containsKey(filename)) {
+        if (curr.fileNames.containsKey(filename)) {
             /* write code that actually DELETES the file from disk */
             removedFiles.add(filename);
-            File file = new File(filename);
-            Utils.restrictedDelete(filename);
+            WorkingTree.delete(filename);
+            stats.remove(filename);
         }
         if (stagedBlobs.keySet().contains(filename)) {
             stagedBlobs.remove(filename);
         }
     }
 
+    /* Returns the files whose working copy differs from what the next commit
+       would hold, sorted, each marked "(modified)" or "(deleted)". Only
+       files whose stat data changed are read. */
+    public List<String> modifiedFiles(CommitNode curr) {
+        TreeSet<String> candidates = new TreeSet<>(curr.fileNames.keySet());
+        candidates.addAll(stagedBlobs.keySet());
+        List<String> result = new ArrayList<>();
+        for (String filename : candidates) {
+            if (removedFiles.contains(filename)) {
+                continue;
+            }
+            String expected = stagedBlobs.containsKey(filename)
+                    ? stagedBlobs.get(filename) : curr.fileNames.get(filename);
+            String actual = hashFile(filename);
+            if (actual == null) {
+                result.add(filename + " (deleted)");
+            } else if (!actual.equals(expected)) {
+                result.add(filename + " (modified)");
+            }
+        }
+        return result;
+    }
+
+    /* Returns the working files that are neither staged nor tracked by CURR,
+       sorted. Files staged for removal count as untracked. */
+    public List<String> untrackedFiles(CommitNode curr) {
+        List<String> result = new ArrayList<>();
+        for (String filename : WorkingTree.snapshot().files()) {
+            if (!stagedBlobs.containsKey(filename)
+                    && (!curr.fileNames.containsKey(filename)
+                        || removedFiles.contains(filename))) {
+                result.add(filename);
+            }
+        }
+        return result;
+    }
 
     public void commit(String commitMessage) {
-        File file = new File(GitLet.REPO + "/commitTree");
-        CommitTree tree = (CommitTree) FileUtil.deSerialize(file);
-        CommitNode newNode = new CommitNode(commitMessage);
+        commit(commitMessage, null);
+    }
 
-        newNode.blobs = tree.currPtr.blobs;
+    /* Commits the staged changes; SECONDPARENT is the ID of the merged-in
+       commit when this is a merge commit, else null */
+    public void commit(String commitMessage, String secondParent) {
+        CommitTree tree = CommitTree.load();
+        CommitNode curr = tree.getCurrPtr();
+        CommitNode newNode = new CommitNode(commitMessage);
 
-        newNode.parentName = tree.currPtr.commitID;
-        newNode.fileNames = tree.currPtr.fileNames;
+        newNode.parentName = curr.commitID;
+        newNode.secondParent = secondParent;
+        /* a copy: CURR may be shared through the ObjectCache */
+        newNode.fileNames = new HashMap<>(curr.fileNames);
         for (String removed : removedFiles) {
             newNode.fileNames.remove(removed);
         }
-        //  changed here ^
-        for (String filename : stagedBlobs.keySet()) {
-            newNode.addBlob(stagedBlobs.get(filename));
+        newNode.fileNames.putAll(stagedBlobs);
+        newNode.commitID = newNode.getHash();
+        if (GitLet.getObjectStore().has(newNode.commitID)) {
+            /* the same commit, made again within the same second */
+            throw new GitletException("A commit with ID " + newNode.commitID
+                    + " already exists; try again.");
         }
         removedFiles.clear();
-
-//        newNode.trackedFiles = trackedFiles;
         stagedBlobs.clear();
+        stats.keySet().retainAll(newNode.fileNames.keySet());
+        GitLet.getObjectStore().write(newNode.commitID, FileUtil.changeToByteArr(newNode));
         tree.addCommitNode(newNode);
-        FileUtil.serialize(file, tree);
-        File commit = new File(GitLet.REPO + "/objects/" + newNode.commitID);
-        FileUtil.serialize(commit, newNode);
     }
 
     public int getRemovedSize() {
@@ -1,17 +1,13 @@
-//package gitlet;
-//
-//import org.junit.Test;
-//
-///* The suite of all JUnit tests for the gitlet package.
-//   @author
-// */
-//public class UnitTest {
-//
-//    @Test
-//    public void placeholderTest() {
-//
-//    }
-//
-//}
-//
-//
+package gitlet;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/* The suite of all JUnit tests for the gitlet package.
+   @author
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({MergeBaseTest.class, PackFileTest.class, ChunkerTest.class, DiffTest.class,
+        Merge3Test.class})
+public class UnitTest {
+}
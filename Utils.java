@@ -48,6 +48,27 @@ class Utils {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /* HEX ENCODING */
+
+    /* Returns the 20-byte raw form of the 40-character hex ID HEX. */
+    static byte[] hexToBytes(String hex) {
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return result;
+    }
+
+    /* Returns the lowercase hex form of the raw ID BYTES. */
+    static String bytesToHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
     /* FILE DELETION */
 
     /* Deletes FILE if it exists and is not a directory.  Returns true if FILE
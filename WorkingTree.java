@@ -0,0 +1,234 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Content: A sorted snapshot of the files in the working directory, as
+ *          paths relative to it with '/' between directories. The tree is
+ *          scanned once per command, and the snapshot is kept up to date
+ *          as the command writes and deletes files, so every step of the
+ *          command can look files up without listing directories again.
+ *
+ *          Each directory is listed by its own ForkJoin task, which forks
+ *          a task for every subdirectory it finds, so large trees are
+ *          scanned on all cores. The .gitlet directory is always skipped,
+ *          as is anything matching a glob in .gitletignore (one per line;
+ *          '#' starts a comment; a trailing '/' matches directories only;
+ *          other patterns containing a '/' are matched against the whole
+ *          path, the rest against a name at any depth).
+ *
+ *          The snapshot is updated by whichever thread writes or deletes a
+ *          file, checkout's workers included, so it is kept in a
+ *          concurrent set.
+ */
+
+class WorkingTree {
+    static final String IGNORE_FILE = ".gitletignore";
+
+    private static volatile WorkingTree snapshot = null;
+    private final ConcurrentSkipListSet<String> files;
+
+    private WorkingTree(ConcurrentSkipListSet<String> files) {
+        this.files = files;
+    }
+
+    /* Returns the snapshot of the current working directory, scanning it
+       on first use */
+    static synchronized WorkingTree snapshot() {
+        if (snapshot == null) {
+            snapshot = scan(Paths.get(System.getProperty("user.dir")), ForkJoinPool.commonPool());
+        }
+        return snapshot;
+    }
+
+    /* Drops the snapshot, so the next use scans the working directory
+       again; for processes that outlive a command */
+    static synchronized void forget() {
+        snapshot = null;
+    }
+
+    /* Scans the tree under ROOT using POOL */
+    static WorkingTree scan(Path root, ForkJoinPool pool) {
+        Ignore ignore = new Ignore(root.resolve(IGNORE_FILE));
+        List<String> found = pool.invoke(new DirectoryScan(root, root, ignore));
+        return new WorkingTree(new ConcurrentSkipListSet<>(found));
+    }
+
+    /* Returns true if PATH is a plain file of the working tree */
+    boolean contains(String path) {
+        return files.contains(path);
+    }
+
+    /* Returns every file of the working tree, sorted */
+    NavigableSet<String> files() {
+        return Collections.unmodifiableNavigableSet(files);
+    }
+
+    /* Records that PATH was written by the current command. Nothing needs
+       to be done if the tree has not been scanned yet. */
+    static void written(String path) {
+        WorkingTree tree = snapshot;
+        if (tree != null) {
+            tree.files.add(path);
+        }
+    }
+
+    /* Deletes the working file PATH, if it is there, along with any
+       directories it leaves empty. Like Utils.restrictedDelete, refuses to
+       touch anything outside a gitlet working directory. */
+    static void delete(String path) {
+        File root = new File(System.getProperty("user.dir"));
+        if (!new File(root, GitLet.REPO).isDirectory()) {
+            throw new IllegalArgumentException("not .gitlet working directory");
+        }
+        File file = new File(root, path);
+        if (!file.isDirectory()) {
+            file.delete();
+        }
+        /* deleting a directory that is not empty simply fails */
+        File dir = file.getParentFile();
+        while (!dir.equals(root) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+        WorkingTree tree = snapshot;
+        if (tree != null) {
+            tree.files.remove(path);
+        }
+    }
+
+    /* Lists one directory, forking a task for each of its subdirectories */
+    private static class DirectoryScan extends RecursiveTask<List<String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Path dir;
+        private final Ignore ignore;
+
+        DirectoryScan(Path root, Path dir, Ignore ignore) {
+            this.root = root;
+            this.dir = dir;
+            this.ignore = ignore;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<String> result = new ArrayList<>();
+            List<DirectoryScan> subdirs = new ArrayList<>();
+            try {
+                Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1,
+                        new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            if (file.equals(dir)) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                            String path = relative(file);
+                            if (attrs.isDirectory()) {
+                                if (!ignore.skips(path, true)) {
+                                    DirectoryScan task = new DirectoryScan(root, file, ignore);
+                                    task.fork();
+                                    subdirs.add(task);
+                                }
+                            } else if (attrs.isRegularFile() && !ignore.skips(path, false)) {
+                                result.add(path);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException excp) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+            } catch (IOException excp) {
+                excp.printStackTrace();
+            }
+            for (DirectoryScan task : subdirs) {
+                result.addAll(task.join());
+            }
+            return result;
+        }
+
+        private String relative(Path file) {
+            return root.relativize(file).toString().replace(File.separatorChar, '/');
+        }
+    }
+
+    /* The ignore rules of a working tree */
+    private static class Ignore {
+        private final List<PathMatcher> anyDepth = new ArrayList<>();
+        private final List<PathMatcher> fromRoot = new ArrayList<>();
+        private final List<Boolean> anyDepthDirOnly = new ArrayList<>();
+        private final List<Boolean> fromRootDirOnly = new ArrayList<>();
+
+        Ignore(Path ignoreFile) {
+            if (!Files.isRegularFile(ignoreFile)) {
+                return;
+            }
+            try {
+                for (String line : Files.readAllLines(ignoreFile)) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    boolean dirOnly = line.endsWith("/");
+                    if (dirOnly) {
+                        line = line.substring(0, line.length() - 1);
+                    }
+                    boolean anchored = line.contains("/");
+                    if (line.startsWith("/")) {
+                        line = line.substring(1);
+                    }
+                    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + line);
+                    if (anchored) {
+                        fromRoot.add(matcher);
+                        fromRootDirOnly.add(dirOnly);
+                    } else {
+                        anyDepth.add(matcher);
+                        anyDepthDirOnly.add(dirOnly);
+                    }
+                }
+            } catch (IOException excp) {
+                excp.printStackTrace();
+            }
+        }
+
+        /* Returns true if PATH, relative to the root, is to be left out */
+        boolean skips(String path, boolean isDirectory) {
+            if (path.equals(GitLet.REPO)) {
+                return true;
+            }
+            Path relative = Paths.get(path);
+            Path name = relative.getFileName();
+            for (int i = 0; i < anyDepth.size(); ++i) {
+                if ((isDirectory || !anyDepthDirOnly.get(i)) && anyDepth.get(i).matches(name)) {
+                    return true;
+                }
+            }
+            for (int i = 0; i < fromRoot.size(); ++i) {
+                if ((isDirectory || !fromRootDirOnly.get(i)) && fromRoot.get(i).matches(relative)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}